@@ -0,0 +1,59 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.Comparator;
+
+/**
+ * A schedule comparator which can tell from a partial schedule that no
+ * schedule built from it can be sorted before a given schedule. The engine
+ * uses this to skip whole parts of the search when it only needs the best
+ * few schedules; see {@link SchedulerEngine#generateTopSchedules}.
+ */
+public interface BoundedComparator extends Comparator<Schedule> {
+    /**
+     * Returns whether every schedule containing all of the sections in the
+     * given partial schedule, including the partial schedule itself, would
+     * be sorted at or after the given schedule. Returning {@code false} is
+     * always safe, but returning {@code true} wrongly will cause good
+     * schedules to be left out.
+     * @param partial a partial schedule
+     * @param schedule a complete schedule
+     * @return whether no schedule built on {@code partial} could be sorted
+     *         before {@code schedule}
+     */
+    boolean canOnlyFollow(Schedule partial, Schedule schedule);
+}
@@ -0,0 +1,264 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.CourseDescriptor;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.Course;
+import edu.rpi.scheduler.schedb.spec.CourseID;
+import edu.rpi.scheduler.schedb.spec.Department;
+import edu.rpi.scheduler.schedb.spec.SchedulerData;
+import edu.rpi.scheduler.schedb.spec.Section;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Records which pairs of courses in a catalog always conflict, that is,
+ * which pairs have no two sections which fit together. Each course's row is
+ * a bit set over every course in the catalog, so {@link #coursesConflict}
+ * is a single bit test. The rows are computed on a pool of threads, one per
+ * processor.
+ * <br><br>
+ * An index can be built from the index of an engine's previous catalog:
+ * the conflicts between two courses found in both catalogs with the same
+ * section times are copied rather than computed again, so loading a newer
+ * version of a catalog only costs as much as the courses which changed. The
+ * new index does not refer to the previous one, so the previous catalog can
+ * be let go of.
+ */
+final class ConflictIndex {
+    /**
+     * Returns the index of the given catalog, which is the given previous
+     * index if it is of the same catalog. Building an index takes a while, so
+     * this should not be called while holding a lock.
+     * @param data the catalog to index
+     * @param previous the index of the previous catalog, or {@code null}
+     * @return the catalog's conflict index
+     */
+    static ConflictIndex getInstance(SchedulerData data,
+            ConflictIndex previous) {
+        if (previous != null && previous.data == data) return previous;
+        return new ConflictIndex(data, previous);
+    }
+
+    private final SchedulerData data;
+    private final Map<Key, Integer> ids = new HashMap<Key, Integer>();
+    private final Course[] courses;
+    /** The distinct section times of each course. */
+    private final WeekMask<?>[][] masks;
+    private final int words;
+    private final long[][] rows;
+
+    private ConflictIndex(SchedulerData data, ConflictIndex previous) {
+        this.data = data;
+
+        List<Course> courseList = new ArrayList<Course>();
+        for (Department dept : data.getDepartments()) {
+            for (Course course : dept.getCourses()) {
+                ids.put(new Key(dept, course), courseList.size());
+                courseList.add(course);
+            }
+        }
+        int count = courseList.size();
+        courses = courseList.toArray(new Course[count]);
+        masks = new WeekMask<?>[count][];
+        for (int i = 0; i < count; i++) {
+            Set<WeekMask<?>> distinct = new LinkedHashSet<WeekMask<?>>();
+            for (Section section : courses[i].getSections()) {
+                distinct.add(section.getWeekMask());
+            }
+            masks[i] = distinct.toArray(new WeekMask<?>[distinct.size()]);
+        }
+        words = (count + 63) >>> 6;
+        rows = new long[count][words];
+
+        // the previous index's id of each course whose times are unchanged
+        int[] old = new int[count];
+        for (int i = 0; i < count; i++) old[i] = -1;
+        if (previous != null) {
+            for (Map.Entry<Key, Integer> entry : ids.entrySet()) {
+                Integer id = previous.ids.get(entry.getKey());
+                if (id == null) continue;
+                int i = entry.getValue();
+                if (sameTimes(masks[i], previous.masks[id])) old[i] = id;
+            }
+        }
+
+        build(previous, old);
+    }
+
+    private static boolean sameTimes(WeekMask<?>[] a, WeekMask<?>[] b) {
+        if (a.length != b.length) return false;
+        for (int i = 0; i < a.length; i++) {
+            if (!a[i].equals(b[i])) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Fills in the rows, each task computing the conflicts of every
+     * {@code threads}th course with itself and the courses after it, and
+     * then copies each conflict to the other course's row.
+     */
+    private void build(final ConflictIndex previous, final int[] old) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(threads,
+                new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r, "Conflict index builder");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>(threads);
+            for (int t = 0; t < threads; t++) {
+                final int first = t;
+                final int step = threads;
+                futures.add(executor.submit(new Runnable() {
+                    public void run() {
+                        for (int i = first; i < courses.length; i += step) {
+                            fillRow(i, previous, old);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while indexing "
+                    + "course conflicts");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) throw (Error) cause;
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdown();
+        }
+
+        for (int i = 0; i < courses.length; i++) {
+            long[] row = rows[i];
+            for (int w = (i + 1) >>> 6; w < words; w++) {
+                long bits = row[w];
+                if (w == (i + 1) >>> 6) bits &= -1L << (i + 1);
+                while (bits != 0) {
+                    int j = (w << 6) + Long.numberOfTrailingZeros(bits);
+                    rows[j][i >>> 6] |= 1L << i;
+                    bits &= bits - 1;
+                }
+            }
+        }
+    }
+
+    private void fillRow(int i, ConflictIndex previous, int[] old) {
+        long[] row = rows[i];
+        int oldi = old[i];
+        for (int j = i; j < courses.length; j++) {
+            boolean conflict;
+            if (oldi != -1 && old[j] != -1) {
+                conflict = previous.coursesConflict(oldi, old[j]);
+            } else {
+                conflict = timesConflict(masks[i], masks[j]);
+            }
+            if (conflict) row[j >>> 6] |= 1L << j;
+        }
+    }
+
+    private static boolean timesConflict(WeekMask<?>[] a, WeekMask<?>[] b) {
+        if (a.length == 0 || b.length == 0) return false;
+        for (WeekMask<?> mask : a) {
+            for (WeekMask<?> other : b) {
+                if (mask.fitsInto(other)) return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns the given course's index in this catalog, or {@code -1} if it
+     * is not in this catalog.
+     */
+    int getId(CourseDescriptor course) {
+        Integer id = ids.get(new Key(course.getDept(),
+                course.getActualCourse()));
+        if (id == null || courses[id] != course.getActualCourse()) return -1;
+        return id;
+    }
+
+    /**
+     * Returns whether no section of one of the given courses fits with any
+     * section of the other.
+     * @param a the {@linkplain #getId id} of one course
+     * @param b the id of another course
+     */
+    boolean coursesConflict(int a, int b) {
+        return (rows[a][b >>> 6] & (1L << b)) != 0;
+    }
+
+    /**
+     * Identifies a course across versions of a catalog.
+     */
+    private static final class Key {
+        private final Department dept;
+        private final CourseID number;
+
+        Key(Department dept, Course course) {
+            this.dept = dept;
+            this.number = course.getNumber();
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key key = (Key) obj;
+            return dept.equals(key.dept) && number.equals(key.number);
+        }
+
+        public int hashCode() {
+            return dept.hashCode() * 31 + number.hashCode();
+        }
+    }
+}
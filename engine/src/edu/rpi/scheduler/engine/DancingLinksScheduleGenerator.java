@@ -0,0 +1,343 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.ScheduleNode;
+import edu.rpi.scheduler.schedb.UniqueSection;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.DayMask;
+import edu.rpi.scheduler.schedb.spec.Schedule;
+import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Generates schedules by solving an exact cover problem with Knuth's
+ * "dancing links" (Algorithm X on a sparse matrix of doubly linked nodes).
+ * <br><br>
+ * There is a primary column for each course, which must be covered exactly
+ * once, and a secondary column for each block of the week any section uses,
+ * which may be covered at most once. Each section is a row covering its
+ * course's column and the columns of its blocks. Each extra course also has
+ * a row covering only its column, which stands for leaving the course out.
+ * <br><br>
+ * The search always runs on the calling thread.
+ */
+final class DancingLinksScheduleGenerator implements ScheduleGenerator {
+    /**
+     * The number of steps a search takes between checks of its {@link
+     * GenerationControl}.
+     */
+    private static final int STEPS_PER_CHECK = 1024;
+
+    public List<Schedule> generateSchedules(GenerationRequest request) {
+        Matrix matrix = new Matrix(request.getDataPlugin(),
+                request.getRequiredSections(), request.getExtraSections(),
+                request.getBudget(), request.getControl());
+        request.setFractionSource(matrix);
+        matrix.search(0);
+        return matrix.schedules;
+    }
+
+    /**
+     * The exact cover matrix of a set of courses, and the state of a search
+     * over it.
+     */
+    private static final class Matrix
+            implements GenerationRequest.FractionSource {
+        private final SchedulerDataPlugin plugin;
+        private final ScheduleBudget budget;
+        private final GenerationControl control;
+
+        /** The number of primary columns, which come right after the root. */
+        private final int primaryColumns;
+
+        // node 0 is the root, then come the column headers, then the rows
+        private final int[] left;
+        private final int[] right;
+        private final int[] up;
+        private final int[] down;
+        private final int[] column;
+        /** The row of each node which is not a header. */
+        private final int[] row;
+        /** The number of nodes in each column. */
+        private final int[] size;
+
+        /** The section of each row, or {@code null} for leaving out a course. */
+        private final UniqueSection[] rowSections;
+
+        /** The node of the row chosen at each step. */
+        private final int[] chosen;
+        /** The number of rows tried at each step, including the current one. */
+        private final int[] tried;
+        /** The number of rows there were to try at each step. */
+        private final int[] choices;
+        private int depth = 0;
+        private int steps = 0;
+        private boolean stopped = false;
+
+        private final List<Schedule> schedules = new ArrayList<Schedule>();
+
+        Matrix(SchedulerDataPlugin plugin, UniqueSection[][] required,
+                UniqueSection[][] extra, ScheduleBudget budget,
+                GenerationControl control) {
+            this.plugin = plugin;
+            this.budget = budget;
+            this.control = control;
+
+            int courses = required.length + extra.length;
+            primaryColumns = courses;
+
+            // give each block of the week used by any section its own column
+            int stride = 0;
+            int rows = extra.length;
+            for (int i = 0; i < courses; i++) {
+                for (UniqueSection section : getCourse(required, extra, i)) {
+                    WeekMask<?> mask = section.getTimeMask();
+                    for (int day = 0; day < 7; day++) {
+                        int max = mask.getDayMask(day).getMaxBlockNum();
+                        stride = Math.max(stride, max + 1);
+                    }
+                    rows++;
+                }
+            }
+            int[] blockColumns = new int[7 * stride];
+            Arrays.fill(blockColumns, -1);
+            int columns = courses;
+            int nodes = 0;
+            for (int i = 0; i < courses; i++) {
+                for (UniqueSection section : getCourse(required, extra, i)) {
+                    nodes++;
+                    WeekMask<?> mask = section.getTimeMask();
+                    for (int day = 0; day < 7; day++) {
+                        DayMask dayMask = mask.getDayMask(day);
+                        if (dayMask.isEmpty()) continue;
+
+                        int max = dayMask.getMaxBlockNum();
+                        for (int block = 0; block <= max; block++) {
+                            if (!dayMask.isOn(block)) continue;
+
+                            int pos = day * stride + block;
+                            if (blockColumns[pos] == -1) {
+                                blockColumns[pos] = ++columns;
+                            }
+                            nodes++;
+                        }
+                    }
+                }
+            }
+            nodes += extra.length + columns + 1;
+
+            left = new int[nodes];
+            right = new int[nodes];
+            up = new int[nodes];
+            down = new int[nodes];
+            column = new int[nodes];
+            row = new int[nodes];
+            size = new int[columns + 1];
+            rowSections = new UniqueSection[rows];
+            chosen = new int[courses];
+            tried = new int[courses];
+            choices = new int[courses];
+
+            // the primary columns are linked to the root; the secondary ones
+            // are linked only to themselves, so they are never chosen
+            for (int c = 0; c <= columns; c++) {
+                up[c] = c;
+                down[c] = c;
+                column[c] = c;
+                if (c <= primaryColumns) {
+                    left[c] = c == 0 ? primaryColumns : c - 1;
+                    right[c] = c == primaryColumns ? 0 : c + 1;
+                } else {
+                    left[c] = c;
+                    right[c] = c;
+                }
+            }
+
+            int next = columns + 1;
+            int r = 0;
+            int[] rowColumns = new int[7 * stride + 1];
+            for (int i = 0; i < courses; i++) {
+                for (UniqueSection section : getCourse(required, extra, i)) {
+                    int n = 0;
+                    rowColumns[n++] = i + 1;
+                    WeekMask<?> mask = section.getTimeMask();
+                    for (int day = 0; day < 7; day++) {
+                        DayMask dayMask = mask.getDayMask(day);
+                        if (dayMask.isEmpty()) continue;
+
+                        int max = dayMask.getMaxBlockNum();
+                        for (int block = 0; block <= max; block++) {
+                            if (dayMask.isOn(block)) {
+                                rowColumns[n++] = blockColumns[day * stride
+                                        + block];
+                            }
+                        }
+                    }
+                    rowSections[r] = section;
+                    next = addRow(next, r++, rowColumns, n);
+                }
+                if (i >= required.length) {
+                    rowColumns[0] = i + 1;
+                    rowSections[r] = null;
+                    next = addRow(next, r++, rowColumns, 1);
+                }
+            }
+        }
+
+        private static UniqueSection[] getCourse(UniqueSection[][] required,
+                UniqueSection[][] extra, int course) {
+            return course < required.length ? required[course]
+                    : extra[course - required.length];
+        }
+
+        /**
+         * Adds a row covering the given columns, using the nodes starting at
+         * {@code first}.
+         * @return the first node after the row
+         */
+        private int addRow(int first, int r, int[] columns, int count) {
+            for (int i = 0; i < count; i++) {
+                int node = first + i;
+                int c = columns[i];
+                column[node] = c;
+                row[node] = r;
+                left[node] = i == 0 ? first + count - 1 : node - 1;
+                right[node] = i == count - 1 ? first : node + 1;
+
+                // add to the bottom of the column
+                up[node] = up[c];
+                down[node] = c;
+                down[up[c]] = node;
+                up[c] = node;
+                size[c]++;
+            }
+            return first + count;
+        }
+
+        /**
+         * Searches for every schedule which fits into the rows chosen before
+         * the given step.
+         */
+        void search(int k) {
+            if (++steps == STEPS_PER_CHECK) {
+                steps = 0;
+                if (!control.explored(STEPS_PER_CHECK)) stopped = true;
+            }
+            if (stopped) return;
+
+            if (right[0] == 0) {
+                addSchedule(k);
+                return;
+            }
+
+            // branch on the course with the fewest rows left
+            int c = right[0];
+            for (int j = right[c]; j != 0; j = right[j]) {
+                if (size[j] < size[c]) c = j;
+            }
+            if (size[c] == 0) return;
+
+            cover(c);
+            depth = k;
+            choices[k] = size[c];
+            tried[k] = 0;
+            for (int r = down[c]; r != c && !stopped; r = down[r]) {
+                chosen[k] = r;
+                tried[k]++;
+                for (int j = right[r]; j != r; j = right[j]) cover(column[j]);
+                search(k + 1);
+                for (int j = left[r]; j != r; j = left[j]) uncover(column[j]);
+                depth = k;
+            }
+            uncover(c);
+        }
+
+        private void cover(int c) {
+            right[left[c]] = right[c];
+            left[right[c]] = left[c];
+            for (int i = down[c]; i != c; i = down[i]) {
+                for (int j = right[i]; j != i; j = right[j]) {
+                    up[down[j]] = up[j];
+                    down[up[j]] = down[j];
+                    size[column[j]]--;
+                }
+            }
+        }
+
+        private void uncover(int c) {
+            for (int i = up[c]; i != c; i = up[i]) {
+                for (int j = left[i]; j != i; j = left[j]) {
+                    size[column[j]]++;
+                    up[down[j]] = j;
+                    down[up[j]] = j;
+                }
+            }
+            right[left[c]] = c;
+            left[right[c]] = c;
+        }
+
+        private void addSchedule(int length) {
+            List<UniqueSection> sections = new ArrayList<UniqueSection>(length);
+            for (int i = 0; i < length; i++) {
+                UniqueSection section = rowSections[row[chosen[i]]];
+                if (section != null) sections.add(section);
+            }
+            // leaving out every extra course isn't a schedule
+            if (sections.isEmpty()) return;
+
+            if (!budget.take()) {
+                stopped = true;
+                return;
+            }
+            schedules.add(ScheduleNode.getInstance(plugin, sections));
+        }
+
+        public double getFractionDone() {
+            double done = 0;
+            double scale = 1;
+            for (int k = 0; k <= depth && k < choices.length; k++) {
+                if (choices[k] == 0) break;
+
+                // the row at each step above is still being searched
+                done += scale * (tried[k] - 1) / choices[k];
+                scale /= choices[k];
+                if (scale < 1e-6) break;
+            }
+            return Math.min(done, 1);
+        }
+    }
+}
@@ -35,4 +35,23 @@ package edu.rpi.scheduler.engine;
 
 public interface EngineListener {
     void schedulesGenerated(SchedulerEngine engine);
+
+    /**
+     * Called every so often while schedules are being generated, on the
+     * thread which called {@link SchedulerEngine#generateSchedules}.
+     * @param engine the engine generating schedules
+     * @param progress how far along the generation is
+     */
+    void generationProgressed(SchedulerEngine engine,
+            GenerationProgress progress);
+
+    /**
+     * Called when generation stopped because there were more possible
+     * schedules than the engine's {@linkplain
+     * SchedulerEngine#setMaxSchedules limit}. This is called before {@link
+     * #schedulesGenerated}.
+     * @param engine the engine which generated the schedules
+     * @param generated the number of schedules generated before stopping
+     */
+    void schedulesTruncated(SchedulerEngine engine, int generated);
 }
@@ -0,0 +1,117 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.UniqueSection;
+import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+
+/**
+ * Answers whether a course could be added to a set of required courses,
+ * that is, whether there is at least one schedule of the required courses
+ * and the new course. The search stops at the first such schedule, so it is
+ * usually much faster than generating the schedules, and a course which
+ * {@linkplain ConflictIndex always conflicts} with one of the required
+ * courses is turned down without a search at all.
+ */
+final class FeasibilityOracle {
+    private final SchedulerDataPlugin plugin;
+    private final UniqueSection[][] required;
+    private final ConflictIndex index;
+    private final int[] requiredIds;
+
+    private volatile Boolean feasible = null;
+
+    /**
+     * Creates an oracle for the given required courses.
+     * @param plugin the plugin the schedules belong to
+     * @param required the good sections of each required course
+     * @param index the catalog's conflict index, or {@code null}
+     * @param requiredIds the index's id of each required course, or
+     *        {@code -1} for courses not in the index
+     */
+    FeasibilityOracle(SchedulerDataPlugin plugin, UniqueSection[][] required,
+            ConflictIndex index, int[] requiredIds) {
+        this.plugin = plugin;
+        this.required = required;
+        this.index = index;
+        this.requiredIds = requiredIds;
+    }
+
+    /**
+     * Returns whether there is a schedule of the required courses alone. The
+     * answer is kept after the first call.
+     */
+    boolean isFeasible() {
+        Boolean feasible = this.feasible;
+        if (feasible == null) {
+            feasible = isFeasible(required);
+            this.feasible = feasible;
+        }
+        return feasible;
+    }
+
+    /**
+     * Returns whether the required courses can be scheduled, or {@code null}
+     * if {@link #isFeasible} hasn't found out yet.
+     */
+    Boolean getCachedFeasibility() { return feasible; }
+
+    /**
+     * Returns whether there is a schedule of the required courses and a
+     * course with the given sections.
+     * @param sections the good sections of the new course
+     * @param id the conflict index's id of the new course, or {@code -1}
+     */
+    boolean isFeasibleWith(UniqueSection[] sections, int id) {
+        if (sections.length == 0) return false;
+        if (index != null && id != -1) {
+            for (int other : requiredIds) {
+                if (other != -1 && index.coursesConflict(id, other)) {
+                    return false;
+                }
+            }
+        }
+
+        UniqueSection[][] levels = new UniqueSection[required.length + 1][];
+        System.arraycopy(required, 0, levels, 0, required.length);
+        levels[required.length] = sections;
+        return isFeasible(levels);
+    }
+
+    private boolean isFeasible(UniqueSection[][] levels) {
+        SearchKernel kernel = new SearchKernel(plugin, levels,
+                new UniqueSection[0][]);
+        return kernel.newRequiredSearch(null).next();
+    }
+}
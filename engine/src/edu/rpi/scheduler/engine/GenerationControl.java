@@ -0,0 +1,118 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets a running schedule generation be cancelled, and reports its progress.
+ * The code doing the generation calls {@link #explored} every so often; this
+ * counts the search steps taken, reports progress at most every
+ * {@link #REPORT_INTERVAL} milliseconds, and tells the caller whether to go
+ * on.
+ * <br><br>
+ * Progress is only reported on the thread which created the control, so
+ * that listeners are never called from worker threads; explored steps from
+ * other threads are still counted. Interrupting that thread cancels the
+ * generation.
+ */
+abstract class GenerationControl {
+    /** The least time between progress reports, in milliseconds. */
+    static final long REPORT_INTERVAL = 200;
+
+    private final Thread reportingThread = Thread.currentThread();
+    private final ScheduleBudget budget;
+    private final AtomicLong nodes = new AtomicLong();
+    private volatile boolean cancelled = false;
+
+    private GenerationRequest.FractionSource fractionSource = null;
+    private long lastReport = System.currentTimeMillis();
+
+    /**
+     * Creates a control for a generation which takes room for its schedules
+     * from the given budget.
+     */
+    GenerationControl(ScheduleBudget budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Cancels the generation. The generation stops soon after.
+     */
+    void cancel() {
+        cancelled = true;
+    }
+
+    boolean isCancelled() { return cancelled; }
+
+    /**
+     * Sets the object which estimates how much of the generation is done.
+     * This should only be called on the reporting thread.
+     */
+    void setFractionSource(GenerationRequest.FractionSource source) {
+        this.fractionSource = source;
+    }
+
+    /**
+     * Records that the given number of search steps were taken, and reports
+     * progress if it is time to.
+     * @param count the number of search steps taken since the last call
+     * @return whether the generation should go on
+     */
+    boolean explored(int count) {
+        nodes.addAndGet(count);
+        if (Thread.currentThread() == reportingThread) {
+            if (reportingThread.isInterrupted()) {
+                cancelled = true;
+
+            } else if (!cancelled) {
+                long now = System.currentTimeMillis();
+                if (now - lastReport >= REPORT_INTERVAL) {
+                    lastReport = now;
+                    GenerationRequest.FractionSource source = fractionSource;
+                    double done = source == null ? -1
+                            : source.getFractionDone();
+                    reportProgress(new GenerationProgress(nodes.get(),
+                            budget.getUsed(), done));
+                }
+            }
+        }
+        return !cancelled;
+    }
+
+    /**
+     * Called on the reporting thread every so often while the generation
+     * runs.
+     */
+    abstract void reportProgress(GenerationProgress progress);
+}
@@ -0,0 +1,77 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+/**
+ * A snapshot of how far along a schedule generation is, as passed to
+ * {@link EngineListener#generationProgressed}.
+ */
+public final class GenerationProgress {
+    private final long nodesExplored;
+    private final int schedulesFound;
+    private final double fractionDone;
+
+    GenerationProgress(long nodesExplored, int schedulesFound,
+            double fractionDone) {
+        this.nodesExplored = nodesExplored;
+        this.schedulesFound = schedulesFound;
+        this.fractionDone = fractionDone;
+    }
+
+    /**
+     * Returns roughly how many sections have been tried so far.
+     * @return the number of search steps taken
+     */
+    public long getNodesExplored() { return nodesExplored; }
+
+    /**
+     * Returns the number of schedules generated so far.
+     * @return the number of schedules found
+     */
+    public int getSchedulesFound() { return schedulesFound; }
+
+    /**
+     * Returns an estimate of how much of the generation is done, from
+     * {@code 0} to {@code 1}, or {@code -1} if there is no estimate. The
+     * estimate is based on how much of the search has been covered, and
+     * parts of the search can take much longer than others, so it should
+     * only be used for something like a progress bar.
+     * @return the fraction of the generation which is done, or {@code -1}
+     */
+    public double getFractionDone() { return fractionDone; }
+
+    public String toString() {
+        return "GenerationProgress: nodes=" + nodesExplored + ", found="
+                + schedulesFound + ", done=" + fractionDone;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.CourseDescriptor;
+import edu.rpi.scheduler.schedb.SectionDescriptor;
+import edu.rpi.scheduler.schedb.UniqueSection;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Everything a {@link ScheduleGenerator} is given to generate schedules
+ * from: the courses and constraints the user chose, the same sections
+ * already filtered and grouped, and the means to honor the engine's
+ * {@linkplain SchedulerEngine#setMaxSchedules schedule limit}, report
+ * progress and notice cancellation.
+ * <br><br>
+ * A generator must {@linkplain #take take room} for each schedule before
+ * keeping it, and should stop once there is no more room. It should call
+ * {@link #explored} every so often, and stop when that returns {@code
+ * false}.
+ */
+public final class GenerationRequest {
+    private final SchedulerDataPlugin plugin;
+    private final List<CourseDescriptor> requiredCourses;
+    private final List<CourseDescriptor> extraCourses;
+    private final WeekMask<?> blockedTime;
+    private final Collection<SectionDescriptor> blockedSections;
+    private final UniqueSection[][] requiredLevels;
+    private final UniqueSection[][] extraLevels;
+    private final ScheduleBudget budget;
+    private final GenerationControl control;
+    private final ExecutorService executor;
+    private final int threads;
+
+    GenerationRequest(SchedulerDataPlugin plugin,
+            List<CourseDescriptor> requiredCourses,
+            List<CourseDescriptor> extraCourses, WeekMask<?> blockedTime,
+            Collection<SectionDescriptor> blockedSections,
+            UniqueSection[][] requiredLevels, UniqueSection[][] extraLevels,
+            ScheduleBudget budget, GenerationControl control,
+            ExecutorService executor, int threads) {
+        this.plugin = plugin;
+        this.requiredCourses = requiredCourses;
+        this.extraCourses = extraCourses;
+        this.blockedTime = blockedTime;
+        this.blockedSections = blockedSections;
+        this.requiredLevels = requiredLevels;
+        this.extraLevels = extraLevels;
+        this.budget = budget;
+        this.control = control;
+        this.executor = executor;
+        this.threads = threads;
+    }
+
+    /**
+     * Returns the plugin used to create schedules.
+     * @return the data plugin of the engine's database
+     */
+    public SchedulerDataPlugin getDataPlugin() { return plugin; }
+
+    /**
+     * Returns the courses each schedule must have a section of.
+     * @return the required courses
+     */
+    public List<CourseDescriptor> getRequiredCourses() {
+        return requiredCourses;
+    }
+
+    /**
+     * Returns the courses each schedule may have a section of.
+     * @return the extra courses
+     */
+    public List<CourseDescriptor> getExtraCourses() { return extraCourses; }
+
+    /**
+     * Returns the time no section in a schedule may overlap. The mask is
+     * frozen.
+     * @return the time the user blocked out
+     */
+    public WeekMask<?> getBlockedTime() { return blockedTime; }
+
+    /**
+     * Returns the sections no schedule may have.
+     * @return the sections the user blocked
+     */
+    public Collection<SectionDescriptor> getBlockedSections() {
+        return blockedSections;
+    }
+
+    /**
+     * Returns the allowed sections of each required course: those which are
+     * not blocked and do not overlap the blocked time, with sections at the
+     * same times grouped together. The courses are in the order the default
+     * generator searches them, fewest sections first.
+     * @return the allowed sections of each required course
+     */
+    public UniqueSection[][] getRequiredSections() { return requiredLevels; }
+
+    /**
+     * Returns the allowed sections of each extra course, like {@link
+     * #getRequiredSections}.
+     * @return the allowed sections of each extra course
+     */
+    public UniqueSection[][] getExtraSections() { return extraLevels; }
+
+    /**
+     * Returns the thread pool schedules may be generated on.
+     * @return the engine's thread pool, or {@code null} if schedules should
+     *         be generated on the calling thread
+     */
+    public ExecutorService getExecutor() { return executor; }
+
+    /**
+     * Returns the number of threads in the {@linkplain #getExecutor thread
+     * pool}.
+     * @return the engine's {@linkplain SchedulerEngine#setParallelism
+     *         parallelism}
+     */
+    public int getParallelism() { return threads; }
+
+    /**
+     * Takes room for one more schedule. This may be called from any thread.
+     * @return whether the schedule may be kept; once this returns {@code
+     *         false}, generation should stop
+     */
+    public boolean take() { return budget.take(); }
+
+    /**
+     * Records that the given number of search steps were taken, and
+     * reports progress to the engine's listeners if it is time to. Progress
+     * is only reported when this is called on the thread which called
+     * {@link ScheduleGenerator#generateSchedules}, but it may be called from
+     * any thread.
+     * @param steps the number of search steps taken since the last call
+     * @return whether generation should go on, rather than stop because it
+     *         was cancelled
+     */
+    public boolean explored(int steps) { return control.explored(steps); }
+
+    /**
+     * Sets the object which estimates how much of the generation is done,
+     * for progress reports.
+     * @param source the estimate of how much is done
+     */
+    public void setFractionSource(FractionSource source) {
+        control.setFractionSource(source);
+    }
+
+    ScheduleBudget getBudget() { return budget; }
+
+    GenerationControl getControl() { return control; }
+
+    /**
+     * Estimates how much of a generation is done.
+     */
+    public interface FractionSource {
+        /**
+         * Returns an estimate of how much of the generation is done, from
+         * {@code 0} to {@code 1}.
+         */
+        double getFractionDone();
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Generates schedules with a {@link SearchKernel}, using a {@link
+ * ScheduleCursor} on the calling thread or a {@link
+ * ParallelScheduleBuilder} on a thread pool.
+ */
+final class KernelScheduleGenerator implements ScheduleGenerator {
+    public List<Schedule> generateSchedules(GenerationRequest request) {
+        ScheduleBudget budget = request.getBudget();
+        GenerationControl control = request.getControl();
+        ExecutorService executor = request.getExecutor();
+        int threads = request.getParallelism();
+        SearchKernel kernel = new SearchKernel(request.getDataPlugin(),
+                request.getRequiredSections(), request.getExtraSections());
+        if (executor == null || threads <= 1) {
+            List<Schedule> schedules = new ArrayList<Schedule>();
+            ScheduleCursor cursor = new ScheduleCursor(kernel, null);
+            cursor.setControl(control);
+            control.setFractionSource(cursor);
+            while (cursor.hasNext() && budget.take()) {
+                schedules.add(cursor.next());
+            }
+            return schedules;
+        }
+
+        ParallelScheduleBuilder parallelBuilder = new ParallelScheduleBuilder(
+                kernel, executor, threads, budget, control);
+        control.setFractionSource(parallelBuilder);
+        return parallelBuilder.buildSchedules();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.Comparator;
+
+/**
+ * A schedule comparator whose ordering can be computed from a few numbers
+ * per schedule. Sorting by such a comparator computes each schedule's key
+ * once, rather than recomputing what it compares in every comparison; see
+ * {@link SchedulerEngine#sortBy}.
+ */
+public interface KeyedComparator extends Comparator<Schedule> {
+    /**
+     * Returns the number of values in each schedule's key.
+     * @return the length of each key
+     */
+    int getKeyLength();
+
+    /**
+     * Writes the given schedule's key into the given array. Comparing two
+     * schedules' keys value by value, as signed numbers, must give the same
+     * result as {@link #compare}.
+     * @param schedule the schedule to compute the key of
+     * @param key the array to write the key into
+     * @param off the index to write the first value of the key at
+     */
+    void getKey(Schedule schedule, long[] key, int off);
+}
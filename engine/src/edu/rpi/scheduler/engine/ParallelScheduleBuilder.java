@@ -0,0 +1,287 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Runs a {@link SearchKernel}'s search on a thread pool by splitting it into
+ * many independent subtrees. The required-course search is split on the
+ * sections of the first (most constrained) courses, going as many levels
+ * deep as it takes to produce several tasks per thread, so that idle
+ * threads keep taking small tasks from the pool's queue while others work
+ * through large subtrees. The extra-course search is split the same way, or
+ * on the sections of the first extra course if there are no required
+ * courses.
+ * <br><br>
+ * Each task's results are kept separately and joined in task order, so the
+ * returned list is exactly what a {@link ScheduleCursor} would return. If
+ * the {@link ScheduleBudget} runs out, every task stops, and which of the
+ * schedules are kept depends on how far each task got.
+ * <br><br>
+ * Progress is reported to the {@link GenerationControl} by the thread which
+ * calls {@link #buildSchedules} while it waits for the tasks. If the
+ * control is cancelled, or that thread is interrupted, the tasks stop and
+ * the schedules returned are incomplete.
+ */
+class ParallelScheduleBuilder implements GenerationRequest.FractionSource {
+    /**
+     * The number of tasks to try to create for each thread. More tasks
+     * means better balance between threads, at the cost of some overhead
+     * per task.
+     */
+    private static final int TASKS_PER_THREAD = 8;
+
+    private final SearchKernel kernel;
+    private final ExecutorService executor;
+    private final int taskGoal;
+    private final ScheduleBudget budget;
+    private final GenerationControl control;
+
+    /** The share of the whole search done before the running tasks. */
+    private double phaseStart = 0;
+    /** The share of the whole search taken by the running tasks. */
+    private double phaseShare = 1;
+    private List<Future<List<Schedule>>> running = null;
+
+    ParallelScheduleBuilder(SearchKernel kernel, ExecutorService executor,
+            int threads, ScheduleBudget budget, GenerationControl control) {
+        this.kernel = kernel;
+        this.executor = executor;
+        this.taskGoal = threads * TASKS_PER_THREAD;
+        this.budget = budget;
+        this.control = control;
+    }
+
+    List<Schedule> buildSchedules() {
+        int required = kernel.getRequiredLevelCount();
+        int levels = kernel.getLevelCount();
+
+        List<Schedule> schedules = Collections.emptyList();
+        List<int[]> prefixes = null;
+        if (required > 0) {
+            if (levels > required) {
+                // the extra courses' search covers every required
+                // combination once for each combination of extra sections
+                double combinations = 1;
+                for (int i = required; i < levels; i++) {
+                    combinations *= kernel.getLevelSize(i) + 1;
+                }
+                phaseShare = 1 / combinations;
+            }
+            prefixes = getPrefixes(required);
+            schedules = runAll(getTasks(prefixes, required, required));
+
+            if (schedules.isEmpty()) return schedules;
+            phaseStart = phaseShare;
+            phaseShare = 1 - phaseStart;
+        }
+
+        List<Schedule> optschedules = Collections.emptyList();
+        if (levels > required && !control.isCancelled()) {
+            if (required > 0) {
+                optschedules = runAll(getTasks(prefixes, levels, required));
+            } else {
+                optschedules = runAll(getExtraTasks());
+            }
+        }
+
+        List<Schedule> totalSchedules = new ArrayList<Schedule>(schedules.size()
+                + optschedules.size());
+        totalSchedules.addAll(schedules);
+        totalSchedules.addAll(optschedules);
+
+        return totalSchedules;
+    }
+
+    /**
+     * Returns the valid combinations of the first few required courses,
+     * going deep enough to produce several per thread, in search order.
+     */
+    private List<int[]> getPrefixes(int required) {
+        List<int[]> prefixes = Collections.singletonList(new int[0]);
+        int depth = 0;
+        while (depth < required - 1 && prefixes.size() < taskGoal) {
+            depth++;
+            SearchKernel.Search search = kernel.newSearch(depth, depth, null, 0,
+                    null);
+            prefixes = new ArrayList<int[]>();
+            while (search.next()) {
+                int[] prefix = new int[depth];
+                System.arraycopy(search.getChosen(), 0, prefix, 0, depth);
+                prefixes.add(prefix);
+            }
+        }
+        return prefixes;
+    }
+
+    private List<Callable<List<Schedule>>> getTasks(List<int[]> prefixes,
+            final int levels, final int optionalFrom) {
+        List<Callable<List<Schedule>>> tasks
+                = new ArrayList<Callable<List<Schedule>>>(prefixes.size());
+        for (final int[] prefix : prefixes) {
+            tasks.add(new Callable<List<Schedule>>() {
+                public List<Schedule> call() {
+                    List<Schedule> schedules = new ArrayList<Schedule>();
+                    addAll(schedules, kernel.newSearch(levels, optionalFrom,
+                            prefix, prefix.length, null));
+                    return schedules;
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private List<Callable<List<Schedule>>> getExtraTasks() {
+        final int levels = kernel.getLevelCount();
+
+        // split on the sections of the first extra course, in the same order
+        // the search visits them: each section and everything after it, then
+        // the schedules which leave the course out
+        List<Callable<List<Schedule>>> tasks
+                = new ArrayList<Callable<List<Schedule>>>();
+        int size = kernel.getLevelSize(0);
+        for (int i = 0; i < size; i++) {
+            final int[] prefix = new int[] { kernel.getCandidate(0, i) };
+            tasks.add(new Callable<List<Schedule>>() {
+                public List<Schedule> call() {
+                    List<Schedule> schedules = new ArrayList<Schedule>();
+                    if (!budget.take()) return schedules;
+                    schedules.add(kernel.createSchedule(prefix, 1));
+                    if (levels > 1) {
+                        addAll(schedules, kernel.newSearch(levels, 0, prefix,
+                                1, null));
+                    }
+                    return schedules;
+                }
+            });
+        }
+        if (levels > 1) {
+            tasks.add(new Callable<List<Schedule>>() {
+                public List<Schedule> call() {
+                    List<Schedule> schedules = new ArrayList<Schedule>();
+                    addAll(schedules, kernel.newSearch(levels, 0,
+                            new int[] { -1 }, 1, null));
+                    return schedules;
+                }
+            });
+        }
+        return tasks;
+    }
+
+    private void addAll(List<Schedule> schedules, SearchKernel.Search search) {
+        search.setControl(control);
+        while (search.next()) {
+            if (!budget.take()) return;
+            schedules.add(search.createSchedule());
+        }
+    }
+
+    public double getFractionDone() {
+        List<Future<List<Schedule>>> running = this.running;
+        if (running == null) return phaseStart;
+
+        int done = 0;
+        for (Future<List<Schedule>> future : running) {
+            if (future.isDone()) done++;
+        }
+        return phaseStart + phaseShare * done / running.size();
+    }
+
+    private List<Schedule> runAll(List<Callable<List<Schedule>>> tasks) {
+        if (tasks.isEmpty()) return Collections.emptyList();
+
+        List<Future<List<Schedule>>> futures
+                = new ArrayList<Future<List<Schedule>>>(tasks.size());
+        for (Callable<List<Schedule>> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        running = futures;
+
+        List<List<Schedule>> results
+                = new ArrayList<List<Schedule>>(futures.size());
+        int size = 0;
+        for (Future<List<Schedule>> future : futures) {
+            List<Schedule> result = null;
+            try {
+                while (result == null) {
+                    if (!control.explored(0)) {
+                        cancelAll(futures);
+                        return Collections.emptyList();
+                    }
+                    try {
+                        result = future.get(GenerationControl.REPORT_INTERVAL,
+                                TimeUnit.MILLISECONDS);
+                    } catch (TimeoutException e) {
+                        // report progress and check whether to go on
+                    }
+                }
+            } catch (InterruptedException e) {
+                control.cancel();
+                cancelAll(futures);
+                Thread.currentThread().interrupt();
+                return Collections.emptyList();
+            } catch (ExecutionException e) {
+                cancelAll(futures);
+                Throwable cause = e.getCause();
+                if (cause instanceof Error) throw (Error) cause;
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+            results.add(result);
+            size += result.size();
+        }
+
+        running = null;
+        List<Schedule> schedules = new ArrayList<Schedule>(size);
+        for (List<Schedule> result : results) schedules.addAll(result);
+        return schedules;
+    }
+
+    private static void cancelAll(List<Future<List<Schedule>>> futures) {
+        for (Future<List<Schedule>> future : futures) future.cancel(false);
+    }
+}
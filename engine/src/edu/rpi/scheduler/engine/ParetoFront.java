@@ -0,0 +1,143 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Keeps the Pareto-optimal schedules of those offered to it: the schedules
+ * for which no other schedule is at least as good by every {@linkplain
+ * ScheduleMetric metric}. Schedules with the same value for every metric
+ * are interchangeable, so only the first of them is kept. A schedule is
+ * dropped as soon as a schedule which dominates it is offered.
+ * <br><br>
+ * This also serves as the search's pruner: a partial schedule is not
+ * searched if a schedule already kept is at least as good as the metrics'
+ * lower bounds for it, since every schedule built on it would be dominated.
+ */
+final class ParetoFront implements SearchKernel.Pruner {
+    private final ScheduleMetric[] metrics;
+    private final List<Point> front = new ArrayList<Point>();
+    private final int[] bounds;
+
+    ParetoFront(List<? extends ScheduleMetric> metrics) {
+        this.metrics = metrics.toArray(new ScheduleMetric[metrics.size()]);
+        this.bounds = new int[this.metrics.length];
+    }
+
+    void offer(Schedule schedule) {
+        WeekMask<?> mask = schedule.getClassMask();
+        int[] values = new int[metrics.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = metrics[i].getValue(mask);
+        }
+        if (isDominated(values)) return;
+
+        for (Iterator<Point> it = front.iterator(); it.hasNext();) {
+            if (dominates(values, it.next().values)) it.remove();
+        }
+        front.add(new Point(schedule, values));
+    }
+
+    public boolean canPrune(Schedule partial) {
+        if (front.isEmpty()) return false;
+
+        WeekMask<?> mask = partial.getClassMask();
+        for (int i = 0; i < bounds.length; i++) {
+            bounds[i] = metrics[i].getLowerBound(mask);
+        }
+        return isDominated(bounds);
+    }
+
+    /**
+     * Returns whether a schedule kept is at least as good as the given
+     * values by every metric.
+     */
+    private boolean isDominated(int[] values) {
+        for (Point point : front) {
+            if (dominates(point.values, values)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns whether {@code a} is at least as good as {@code b} by every
+     * metric.
+     */
+    private static boolean dominates(int[] a, int[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] > b[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the schedules kept, ordered by their value for the first
+     * metric, then the second, and so on.
+     * @return the Pareto-optimal schedules offered
+     */
+    List<Schedule> getSchedules() {
+        List<Point> points = new ArrayList<Point>(front);
+        Collections.sort(points, new Comparator<Point>() {
+            public int compare(Point o1, Point o2) {
+                for (int i = 0; i < o1.values.length; i++) {
+                    int v1 = o1.values[i];
+                    int v2 = o2.values[i];
+                    if (v1 != v2) return v1 < v2 ? -1 : 1;
+                }
+                return 0;
+            }
+        });
+
+        List<Schedule> schedules = new ArrayList<Schedule>(points.size());
+        for (Point point : points) schedules.add(point.schedule);
+        return schedules;
+    }
+
+    private static final class Point {
+        private final Schedule schedule;
+        private final int[] values;
+
+        Point(Schedule schedule, int[] values) {
+            this.schedule = schedule;
+            this.values = values;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.AbstractList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.FutureTask;
+
+/**
+ * An unmodifiable list of generated schedules, in one of several orders. The
+ * schedules are kept in the order they were generated, and the order of each
+ * comparator they have been {@linkplain ScheduleRanker ranked} by is kept as
+ * a permutation, so switching between orders which have been ranked already
+ * only switches permutations. Since the list itself never changes, anyone
+ * holding on to it sees the new order right away.
+ * <br><br>
+ * The schedules are ranked by each comparator only once: a thread which
+ * {@linkplain #rank ranks} them by a comparator another thread is already
+ * ranking them by waits for that thread's order.
+ */
+final class RankedSchedules extends AbstractList<Schedule>
+        implements RandomAccess {
+    private final Schedule[] schedules;
+    private final Map<Comparator<? super Schedule>, int[]> orders
+            = new HashMap<Comparator<? super Schedule>, int[]>();
+    /** The rankings in progress, by comparator. */
+    private final Map<Comparator<? super Schedule>, FutureTask<int[]>> rankings
+            = new HashMap<Comparator<? super Schedule>, FutureTask<int[]>>();
+    /** The current order, or {@code null} for generation order. */
+    private volatile int[] order = null;
+
+    RankedSchedules(List<Schedule> schedules) {
+        this.schedules = schedules.toArray(new Schedule[schedules.size()]);
+    }
+
+    /**
+     * Returns the schedules in generation order. The returned array must not
+     * be modified.
+     */
+    Schedule[] getSchedules() { return schedules; }
+
+    /**
+     * Ranks the schedules by the given comparator with {@link
+     * ScheduleRanker#rank} and stores its order for later use, unless it is
+     * stored already. If another thread is ranking the schedules by the same
+     * comparator, this waits for its order instead of ranking them again.
+     * This must not be called while holding a lock the ranking thread needs.
+     * @param comp the comparator to rank the schedules by
+     * @param executor the thread pool to rank on, or {@code null}
+     * @param threads the number of threads to rank on
+     */
+    void rank(final Comparator<? super Schedule> comp,
+            final ExecutorService executor, final int threads) {
+        boolean interrupted = false;
+        try {
+            while (true) {
+                FutureTask<int[]> ranking;
+                boolean mine = false;
+                synchronized (this) {
+                    if (orders.containsKey(comp)) return;
+
+                    ranking = rankings.get(comp);
+                    if (ranking == null) {
+                        ranking = new FutureTask<int[]>(new Callable<int[]>() {
+                            public int[] call() {
+                                return ScheduleRanker.rank(schedules, comp,
+                                        executor, threads);
+                            }
+                        });
+                        rankings.put(comp, ranking);
+                        mine = true;
+                    }
+                }
+                if (mine) ranking.run();
+
+                int[] order;
+                try {
+                    order = ranking.get();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                } catch (ExecutionException e) {
+                    synchronized (this) {
+                        if (rankings.get(comp) == ranking) rankings.remove(comp);
+                    }
+                    // another thread's failure, such as its thread pool
+                    // being shut down, is no reason for this one to fail
+                    if (!mine) continue;
+
+                    Throwable cause = e.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    } else if (cause instanceof Error) {
+                        throw (Error) cause;
+                    } else {
+                        throw new IllegalStateException(cause);
+                    }
+                }
+                synchronized (this) {
+                    orders.put(comp, order);
+                    if (rankings.get(comp) == ranking) rankings.remove(comp);
+                }
+                return;
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Puts this list into the given comparator's order, which must have been
+     * {@linkplain #rank ranked} already. If the comparator is {@code
+     * null}, this puts the list into generation order.
+     */
+    synchronized void setOrder(Comparator<? super Schedule> comp) {
+        order = comp == null ? null : orders.get(comp);
+    }
+
+    public Schedule get(int index) {
+        int[] order = this.order;
+        return schedules[order == null ? index : order[index]];
+    }
+
+    public int size() { return schedules.length; }
+}
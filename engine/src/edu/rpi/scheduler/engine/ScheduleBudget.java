@@ -0,0 +1,90 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits the number of schedules a generation may hold at once. Each
+ * schedule must be {@linkplain #take taken} from the budget before it is
+ * kept; once the budget runs out, generation should stop, and the budget
+ * remembers that there were more schedules than it allowed. A budget may be
+ * used by several threads at once.
+ */
+final class ScheduleBudget {
+    private final int max;
+    private final AtomicInteger used = new AtomicInteger();
+    private volatile boolean exceeded = false;
+
+    /**
+     * Creates a budget for the given number of schedules.
+     */
+    ScheduleBudget(int max) {
+        this.max = max;
+    }
+
+    /**
+     * Takes room for one schedule from this budget.
+     * @return whether there was room for another schedule
+     */
+    boolean take() {
+        while (true) {
+            int current = used.get();
+            if (current >= max) {
+                exceeded = true;
+                return false;
+            }
+            if (used.compareAndSet(current, current + 1)) return true;
+        }
+    }
+
+    /**
+     * Gives back room for the given number of schedules, which are no longer
+     * being kept.
+     */
+    void release(int count) {
+        used.addAndGet(-count);
+    }
+
+    /**
+     * Returns the number of schedules this budget currently has room taken
+     * for.
+     */
+    int getUsed() { return used.get(); }
+
+    /**
+     * Returns whether a schedule was ever turned away because this budget had
+     * run out.
+     */
+    boolean isExceeded() { return exceeded; }
+}
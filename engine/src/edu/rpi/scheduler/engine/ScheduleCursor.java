@@ -0,0 +1,169 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Produces the schedules for a set of courses and constraints one at a time,
+ * as they are asked for. The schedules are returned in the same order as
+ * {@link SchedulerEngine#getGeneratedSchedules} would hold them before
+ * sorting, but none are generated until they are needed, and memory use is
+ * proportional to the number of courses rather than the number of
+ * schedules. This makes a cursor suitable for selections with too many
+ * possible schedules to hold in memory at once.
+ * <br><br>
+ * A cursor works from a snapshot of the engine's courses and constraints
+ * taken when it is {@linkplain SchedulerEngine#openSchedules opened}; later
+ * changes to the engine do not affect it. A cursor is not thread-safe.
+ */
+public class ScheduleCursor implements Iterator<Schedule>,
+        GenerationRequest.FractionSource {
+    private final SearchKernel kernel;
+    private final SearchKernel.Pruner pruner;
+    private GenerationControl control = null;
+    /**
+     * The share of the whole search taken by the required courses' search,
+     * if there are both required and extra courses.
+     */
+    private final double requiredShare;
+
+    /** The search currently producing schedules. */
+    private SearchKernel.Search search;
+    /** Whether {@link #search} is the search of only the required courses. */
+    private boolean requiredOnly;
+
+    private Schedule next = null;
+    private int count = 0;
+
+    /**
+     * Creates a cursor over the schedules of the given kernel. If a pruner is
+     * given, the parts of the search it rejects are skipped; it is consulted
+     * as the search goes, so its answers may depend on the schedules
+     * returned so far.
+     */
+    ScheduleCursor(SearchKernel kernel, SearchKernel.Pruner pruner) {
+        this.kernel = kernel;
+        this.pruner = pruner;
+
+        requiredOnly = kernel.getRequiredLevelCount() > 0;
+        if (requiredOnly) search = kernel.newRequiredSearch(pruner);
+        else search = kernel.newExtraSearch(pruner);
+
+        // the extra courses' search covers every required combination once
+        // for each combination of extra sections
+        double combinations = 1;
+        for (int i = kernel.getRequiredLevelCount(); i < kernel.getLevelCount();
+                i++) {
+            combinations *= kernel.getLevelSize(i) + 1;
+        }
+        requiredShare = 1 / combinations;
+    }
+
+    /**
+     * Sets the control to report this cursor's progress to. If the control
+     * is cancelled, the cursor ends early.
+     */
+    void setControl(GenerationControl control) {
+        this.control = control;
+        if (search != null) search.setControl(control);
+    }
+
+    /**
+     * Returns an estimate of how much of the search is done, from {@code 0}
+     * to {@code 1}. The estimate is based on which sections of the first
+     * courses are being searched, so it can be far off if some parts of the
+     * search yield many more schedules than others.
+     * @return an estimate of the fraction of the search which is done
+     */
+    public double getFractionDone() {
+        if (search == null) return 1;
+
+        double done = search.getFractionDone();
+        boolean both = kernel.getRequiredLevelCount() > 0
+                && kernel.getLevelCount() > kernel.getRequiredLevelCount();
+        if (!both) return done;
+        else if (requiredOnly) return requiredShare * done;
+        else return requiredShare + (1 - requiredShare) * done;
+    }
+
+    public boolean hasNext() {
+        if (next == null) next = findNext();
+        return next != null;
+    }
+
+    public Schedule next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        Schedule schedule = next;
+        next = null;
+        count++;
+        return schedule;
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as schedules
+     * cannot be removed from a cursor.
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the number of schedules this cursor has returned so far.
+     * @return the number of schedules returned by {@link #next}
+     */
+    public int getCount() { return count; }
+
+    private Schedule findNext() {
+        while (search != null) {
+            if (search.next()) return search.createSchedule();
+
+            // the extra courses are only added to the required courses'
+            // schedules, so if there were none, there's nothing more to do
+            if (requiredOnly && count > 0
+                    && kernel.getLevelCount() > kernel.getRequiredLevelCount()) {
+                search = kernel.newExtraSearch(pruner);
+                search.setControl(control);
+            } else {
+                search = null;
+            }
+            requiredOnly = false;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.CourseDescriptor;
+import edu.rpi.scheduler.schedb.UniqueSection;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.Schedule;
+import edu.rpi.scheduler.schedb.spec.TimePeriod;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A group of schedules of the same courses whose classes are all at the
+ * same times, standing in for all of them in a list of schedules. These
+ * schedules differ only in which sections they hold, such as when two
+ * courses trade equivalent time slots, so they rank the same by every sort
+ * method. A family reads as its first schedule, which it keeps; the rest
+ * are found again by {@link #getSchedules} the first time they are asked
+ * for.
+ *
+ * @see SchedulerEngine#setFamilyGrouping
+ */
+public final class ScheduleFamily implements Schedule {
+    /**
+     * Replaces each group of schedules in the given list with the same
+     * courses and class mask by a family, in place of the group's first
+     * schedule. Schedules which are alone in their group are left as they
+     * are.
+     * @param kernel the kernel the schedules were generated from
+     * @param schedules the schedules to group
+     * @return the schedules and families, in the order of the given list
+     */
+    static List<Schedule> group(SearchKernel kernel,
+            List<Schedule> schedules) {
+        Map<Key, int[]> counts = new HashMap<Key, int[]>();
+        List<Key> keys = new ArrayList<Key>(schedules.size());
+        List<Schedule> firsts = new ArrayList<Schedule>();
+        for (Schedule schedule : schedules) {
+            Key key = new Key(schedule.getClassMask(),
+                    getCourses(schedule.getSections()));
+            int[] count = counts.get(key);
+            if (count == null) {
+                counts.put(key, new int[] { 1 });
+                keys.add(key);
+                firsts.add(schedule);
+            } else {
+                count[0]++;
+            }
+        }
+
+        List<Schedule> grouped = new ArrayList<Schedule>(firsts.size());
+        for (int i = 0; i < firsts.size(); i++) {
+            Key key = keys.get(i);
+            int size = counts.get(key)[0];
+            if (size == 1) {
+                grouped.add(firsts.get(i));
+            } else {
+                grouped.add(new ScheduleFamily(kernel, firsts.get(i),
+                        key.mask, key.courses, size));
+            }
+        }
+        return grouped;
+    }
+
+    private static Set<CourseDescriptor> getCourses(
+            Collection<UniqueSection> sections) {
+        Set<CourseDescriptor> courses = new HashSet<CourseDescriptor>();
+        for (UniqueSection section : sections) {
+            courses.add(section.getCourseDescriptor());
+        }
+        return courses;
+    }
+
+    private final SearchKernel kernel;
+    private final Schedule first;
+    private final WeekMask<?> mask;
+    private final Set<CourseDescriptor> courses;
+    private final int size;
+
+    private List<Schedule> schedules = null;
+
+    private ScheduleFamily(SearchKernel kernel, Schedule first,
+            WeekMask<?> mask, Set<CourseDescriptor> courses, int size) {
+        this.kernel = kernel;
+        this.first = first;
+        this.mask = mask;
+        this.courses = courses;
+        this.size = size;
+    }
+
+    /**
+     * Returns the number of schedules in this family.
+     * @return the number of schedules in this family, at least two
+     */
+    public int getSize() { return size; }
+
+    /**
+     * Returns the schedules in this family, in the order they were
+     * generated. The first time this is called the schedules are searched
+     * for again, among only the sections whose classes are all within this
+     * family's class mask, so this is much faster than generating them, but
+     * not instant.
+     * @return the schedules in this family
+     */
+    public synchronized List<Schedule> getSchedules() {
+        if (schedules == null) {
+            long[] within = kernel.getCandidatesWithin(mask);
+            int blocks = mask.getTimeBlockSum();
+            List<Schedule> found = new ArrayList<Schedule>(size);
+            // a family holds only required courses, or some extra courses
+            // too, so only one of the searches can find its schedules
+            SearchKernel.Search search;
+            if (courses.size() == kernel.getRequiredLevelCount()) {
+                search = kernel.newRequiredSearchWithin(within);
+            } else {
+                search = kernel.newExtraSearchWithin(within);
+            }
+            while (search.next()) {
+                Schedule schedule = search.createSchedule();
+                Collection<UniqueSection> sections = schedule.getSections();
+                int sum = 0;
+                for (UniqueSection section : sections) {
+                    sum += section.getTimeMask().getTimeBlockSum();
+                }
+                // the sections don't overlap and are all within the mask,
+                // so they fill it exactly when their sizes add up to it
+                if (sum == blocks && getCourses(sections).equals(courses)) {
+                    found.add(schedule);
+                }
+            }
+            schedules = Collections.unmodifiableList(found);
+        }
+        return schedules;
+    }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as schedule
+     * families cannot be changed.
+     */
+    public void addSection(UniqueSection section) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean canAdd(UniqueSection section) {
+        return first.canAdd(section);
+    }
+
+    public boolean canAdd(WeekMask<?> mask) { return first.canAdd(mask); }
+
+    public WeekMask<?> getTimeMask() { return first.getTimeMask(); }
+
+    /**
+     * Returns the sections of the first schedule in this family.
+     */
+    public Collection<UniqueSection> getSections() {
+        return first.getSections();
+    }
+
+    public WeekMask<?> getClassMask() { return first.getClassMask(); }
+
+    public int getDaysOfClass() { return first.getDaysOfClass(); }
+
+    public int[] getTimeSums() { return first.getTimeSums(); }
+
+    public List<List<TimePeriod>> getBetweens() {
+        return first.getBetweens();
+    }
+
+    private static final class Key {
+        private final WeekMask<?> mask;
+        private final Set<CourseDescriptor> courses;
+
+        Key(WeekMask<?> mask, Set<CourseDescriptor> courses) {
+            this.mask = mask;
+            this.courses = courses;
+        }
+
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key key = (Key) obj;
+            return mask.equals(key.mask) && courses.equals(key.courses);
+        }
+
+        public int hashCode() {
+            return mask.hashCode() * 31 + courses.hashCode();
+        }
+    }
+}
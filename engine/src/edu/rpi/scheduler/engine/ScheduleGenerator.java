@@ -0,0 +1,84 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.List;
+
+/**
+ * A way of generating every schedule of a set of courses. Each generator
+ * produces the same schedules, though not necessarily in the same order, so
+ * the choice between them is only a matter of speed; which one is fastest
+ * depends on the catalog and the courses selected.
+ * <br><br>
+ * Sites may supply their own generator, set with {@link
+ * SchedulerEngine#setScheduleGenerator}. The user interface picks one with
+ * the {@code scheduler.generator} system property, which names either one
+ * of the built-in generators or a class implementing this interface with a
+ * public no-argument constructor.
+ *
+ * @see SchedulerEngine#setScheduleGenerator
+ */
+public interface ScheduleGenerator {
+    /**
+     * Searches the sections of each course in turn, skipping sections which
+     * conflict with those already chosen. This is the default, and the only
+     * built-in generator which uses more than one thread when the engine's
+     * {@linkplain SchedulerEngine#setParallelism parallelism} is set.
+     */
+    ScheduleGenerator KERNEL = new KernelScheduleGenerator();
+
+    /**
+     * Treats the schedule as an exact cover problem, where each required
+     * course must be covered by exactly one section, each extra course by at
+     * most one, and each block of the week by at most one, and solves it
+     * with Knuth's "dancing links." At each step this branches on the course
+     * with the fewest sections left which fit into the schedule so far.
+     */
+    ScheduleGenerator DANCING_LINKS = new DancingLinksScheduleGenerator();
+
+    /**
+     * Generates every schedule of the given request's courses which meets
+     * its constraints. Each schedule holds one section of each required
+     * course and at most one section of each extra course, none of which
+     * conflict or are blocked; if there are no required courses, the empty
+     * schedule is left out.
+     * @param request the courses and constraints to generate schedules for
+     * @return every schedule of the given courses, or as many as there was
+     *         {@linkplain GenerationRequest#take room} for; if generation was
+     *         cancelled, only some of them
+     */
+    List<Schedule> generateSchedules(GenerationRequest request);
+}
@@ -0,0 +1,191 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.DefensiveTools;
+import edu.rpi.scheduler.schedb.MaskMetrics;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.DayMask;
+
+/**
+ * The built-in {@linkplain ScheduleMetric schedule metrics}. Times are given
+ * in blocks of the schedules' time representation, but metrics which measure
+ * time report it in minutes, so that their weights don't depend on how long a
+ * block is.
+ */
+public final class ScheduleMetrics {
+    private ScheduleMetrics() { }
+
+    /**
+     * The number of days with class.
+     */
+    public static final ScheduleMetric DAYS_OF_CLASS = new ScheduleMetric() {
+        public int getValue(WeekMask<?> classMask) {
+            int days = 0;
+            for (int i = 0; i < 7; i++) {
+                if (!classMask.getDayMask(i).isEmpty()) days++;
+            }
+            return days;
+        }
+
+        public int getLowerBound(WeekMask<?> partialMask) {
+            // adding a class never removes a day of class
+            return getValue(partialMask);
+        }
+    };
+
+    /**
+     * Returns a metric of the total number of minutes between classes on the
+     * same day.
+     * @param minutesPerBlock the number of minutes in a block
+     * @return a metric of the total time between classes
+     */
+    public static ScheduleMetric getTotalGapsMetric(final int minutesPerBlock) {
+        DefensiveTools.checkRange(minutesPerBlock, "minutesPerBlock", 1);
+
+        return new ScheduleMetric() {
+            public int getValue(WeekMask<?> classMask) {
+                return MaskMetrics.getGapSum(classMask) * minutesPerBlock;
+            }
+
+            public int getLowerBound(WeekMask<?> partialMask) {
+                // a class added later could fill any of the gaps
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Returns a metric of how early classes start: for each day, the number
+     * of minutes before the given block from the start of the first class.
+     * @param block the earliest block classes should start at
+     * @param minutesPerBlock the number of minutes in a block
+     * @return a metric of how early classes start
+     */
+    public static ScheduleMetric getEarliestStartMetric(final int block,
+            final int minutesPerBlock) {
+        DefensiveTools.checkRange(block, "block", 0);
+        DefensiveTools.checkRange(minutesPerBlock, "minutesPerBlock", 1);
+
+        return new ScheduleMetric() {
+            public int getValue(WeekMask<?> classMask) {
+                int sum = 0;
+                for (int i = 0; i < 7; i++) {
+                    int first = MaskMetrics.getFirstBlock(classMask.getDayMask(i));
+                    if (first != -1 && first < block) sum += block - first;
+                }
+                return sum * minutesPerBlock;
+            }
+
+            public int getLowerBound(WeekMask<?> partialMask) {
+                // adding a class can only make a day start earlier
+                return getValue(partialMask);
+            }
+        };
+    }
+
+    /**
+     * Returns a metric of how late classes end: for each day, the number of
+     * minutes after the given block until the end of the last class.
+     * @param block the block classes should end by
+     * @param minutesPerBlock the number of minutes in a block
+     * @return a metric of how late classes end
+     */
+    public static ScheduleMetric getLatestEndMetric(final int block,
+            final int minutesPerBlock) {
+        DefensiveTools.checkRange(block, "block", 0);
+        DefensiveTools.checkRange(minutesPerBlock, "minutesPerBlock", 1);
+
+        return new ScheduleMetric() {
+            public int getValue(WeekMask<?> classMask) {
+                int sum = 0;
+                for (int i = 0; i < 7; i++) {
+                    int end = MaskMetrics.getEndBlock(classMask.getDayMask(i));
+                    if (end > block) sum += end - block;
+                }
+                return sum * minutesPerBlock;
+            }
+
+            public int getLowerBound(WeekMask<?> partialMask) {
+                // adding a class can only make a day end later
+                return getValue(partialMask);
+            }
+        };
+    }
+
+    /**
+     * Returns a metric of the number of days without time for lunch: days on
+     * which there is no free stretch of the given length between the given
+     * blocks.
+     * @param from the first block lunch could be eaten in
+     * @param to the block lunch must be over by
+     * @param length the number of blocks lunch takes
+     * @return a metric of the number of days without time for lunch
+     */
+    public static ScheduleMetric getNoLunchMetric(final int from, final int to,
+            final int length) {
+        DefensiveTools.checkRange(from, "from", 0);
+        DefensiveTools.checkRange(length, "length", 1);
+        DefensiveTools.checkRange(to, "to", from + length);
+
+        return new ScheduleMetric() {
+            public int getValue(WeekMask<?> classMask) {
+                int days = 0;
+                for (int i = 0; i < 7; i++) {
+                    DayMask day = classMask.getDayMask(i);
+                    if (!day.isEmpty() && !hasFreeTime(day, from, to, length)) {
+                        days++;
+                    }
+                }
+                return days;
+            }
+
+            public int getLowerBound(WeekMask<?> partialMask) {
+                // adding a class never frees up time
+                return getValue(partialMask);
+            }
+        };
+    }
+
+    private static boolean hasFreeTime(DayMask day, int from, int to,
+            int length) {
+        int free = day.nextClearBlock(from);
+        while (free + length <= to) {
+            int busy = day.nextSetBlock(free);
+            if (busy == -1 || busy - free >= length) return true;
+
+            free = day.nextClearBlock(busy);
+        }
+        return false;
+    }
+}
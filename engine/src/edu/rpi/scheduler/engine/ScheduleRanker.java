@@ -0,0 +1,266 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Ranks schedules by a comparator, producing a permutation of the schedules
+ * rather than sorting them in place. The permutation is merge sorted; if the
+ * comparator is a {@link KeyedComparator}, each schedule's key is computed
+ * once, into one flat array, and the sort compares keys without calling the
+ * comparator at all. With a thread pool, both the keys and the sort are
+ * split into one slice per thread, and the sorted slices are merged at the
+ * end.
+ * <br><br>
+ * Like {@link java.util.Collections#sort}, the sort is stable.
+ */
+final class ScheduleRanker {
+    /** The fewest schedules worth splitting between threads. */
+    private static final int PARALLEL_THRESHOLD = 10000;
+    /** Runs this short are sorted by insertion sort. */
+    private static final int INSERTION_SORT_THRESHOLD = 7;
+
+    private ScheduleRanker() { }
+
+    /**
+     * Returns the order the given schedules would be in if they were sorted
+     * with the given comparator.
+     * @param schedules the schedules to rank
+     * @param comp the comparator to rank by
+     * @param executor the thread pool to rank on, or {@code null} to rank on
+     *        the calling thread
+     * @param threads the number of threads in the thread pool
+     * @return the index in {@code schedules} of each schedule, in sorted order
+     */
+    static int[] rank(final Schedule[] schedules,
+            final Comparator<? super Schedule> comp, ExecutorService executor,
+            int threads) {
+        int n = schedules.length;
+        if (executor == null || n < PARALLEL_THRESHOLD) threads = 1;
+        final int[] perm = new int[n];
+        final int[] buf = new int[n];
+
+        final IndexComparator indexComp;
+        if (comp instanceof KeyedComparator) {
+            KeyedComparator keyed = (KeyedComparator) comp;
+            indexComp = new KeyComparator(keyed.getKeyLength(), n);
+        } else {
+            indexComp = new IndexComparator() {
+                public int compare(int a, int b) {
+                    return comp.compare(schedules[a], schedules[b]);
+                }
+            };
+        }
+
+        final int[] bounds = new int[threads + 1];
+        for (int i = 0; i <= threads; i++) {
+            bounds[i] = (int) ((long) n * i / threads);
+        }
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+        for (int i = 0; i < threads; i++) {
+            final int from = bounds[i];
+            final int to = bounds[i + 1];
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    for (int s = from; s < to; s++) perm[s] = s;
+                    if (indexComp instanceof KeyComparator) {
+                        ((KeyComparator) indexComp).computeKeys(
+                                (KeyedComparator) comp, schedules, from, to);
+                    }
+                    mergeSort(perm, buf, from, to, indexComp);
+                    return null;
+                }
+            });
+        }
+        runAll(tasks, executor);
+
+        // merge the sorted slices
+        int[] src = perm;
+        int[] dest = buf;
+        for (int width = 1; width < threads; width *= 2) {
+            for (int i = 0; i < threads; i += 2 * width) {
+                int from = bounds[i];
+                int mid = bounds[Math.min(i + width, threads)];
+                int to = bounds[Math.min(i + 2 * width, threads)];
+                merge(src, dest, from, mid, to, indexComp);
+            }
+            int[] temp = src;
+            src = dest;
+            dest = temp;
+        }
+        return src;
+    }
+
+    /**
+     * Runs the given short tasks on the given thread pool, or on the calling
+     * thread if there is only one, and waits for all of them to finish.
+     */
+    static void runAll(List<Callable<Object>> tasks,
+            ExecutorService executor) {
+        if (tasks.size() == 1) {
+            try {
+                tasks.get(0).call();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+            return;
+        }
+
+        List<Future<Object>> futures = new ArrayList<Future<Object>>();
+        for (Callable<Object> task : tasks) futures.add(executor.submit(task));
+
+        // the tasks are short, so an interrupt only has to be passed on
+        boolean interrupted = false;
+        try {
+            for (Future<Object> future : futures) {
+                while (true) {
+                    try {
+                        future.get();
+                        break;
+                    } catch (InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            } else {
+                throw new IllegalStateException(cause);
+            }
+        } finally {
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Sorts {@code perm[from]} through {@code perm[to - 1]}, using the same
+     * part of {@code buf} as scratch space.
+     */
+    private static void mergeSort(int[] perm, int[] buf, int from, int to,
+            IndexComparator comp) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                int p = perm[i];
+                int j = i;
+                while (j > from && comp.compare(perm[j - 1], p) > 0) {
+                    perm[j] = perm[j - 1];
+                    j--;
+                }
+                perm[j] = p;
+            }
+            return;
+        }
+
+        int mid = (from + to) >>> 1;
+        mergeSort(perm, buf, from, mid, comp);
+        mergeSort(perm, buf, mid, to, comp);
+        if (comp.compare(perm[mid - 1], perm[mid]) <= 0) return;
+
+        System.arraycopy(perm, from, buf, from, to - from);
+        merge(buf, perm, from, mid, to, comp);
+    }
+
+    /**
+     * Merges the sorted runs {@code src[from..mid)} and {@code src[mid..to)}
+     * into {@code dest[from..to)}, taking from the first run on ties.
+     */
+    private static void merge(int[] src, int[] dest, int from, int mid, int to,
+            IndexComparator comp) {
+        int i = from;
+        int j = mid;
+        for (int k = from; k < to; k++) {
+            if (j >= to || (i < mid && comp.compare(src[i], src[j]) <= 0)) {
+                dest[k] = src[i++];
+            } else {
+                dest[k] = src[j++];
+            }
+        }
+    }
+
+    /**
+     * Compares schedules by their index.
+     */
+    private interface IndexComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Compares schedules by their keys, which are stored in one flat array.
+     */
+    private static final class KeyComparator implements IndexComparator {
+        private final int length;
+        private final long[] keys;
+
+        KeyComparator(int length, int count) {
+            this.length = length;
+            this.keys = new long[count * length];
+        }
+
+        /**
+         * Computes the keys of {@code schedules[from]} through {@code
+         * schedules[to - 1]}.
+         */
+        void computeKeys(KeyedComparator comp, Schedule[] schedules, int from,
+                int to) {
+            for (int s = from; s < to; s++) {
+                comp.getKey(schedules[s], keys, s * length);
+            }
+        }
+
+        public int compare(int a, int b) {
+            int aoff = a * length;
+            int boff = b * length;
+            for (int i = 0; i < length; i++) {
+                long ka = keys[aoff + i];
+                long kb = keys[boff + i];
+                if (ka != kb) return ka < kb ? -1 : 1;
+            }
+            return 0;
+        }
+    }
+}
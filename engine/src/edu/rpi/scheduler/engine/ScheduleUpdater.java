@@ -0,0 +1,328 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.CourseDescriptor;
+import edu.rpi.scheduler.schedb.ScheduleNode;
+import edu.rpi.scheduler.schedb.UniqueSection;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.Schedule;
+import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+
+/**
+ * Holds the sections a set of schedules was generated from, so that the
+ * schedules can be brought up to date when the user's courses or
+ * constraints change, without searching for every schedule again:
+ * <ul>
+ * <li>schedules holding sections which are no longer allowed, or extra
+ * courses which were removed, are dropped</li>
+ * <li>sections which became allowed are searched for, but only schedules
+ * holding at least one of them are generated</li>
+ * <li>the remaining schedules are extended with the sections of courses
+ * which were added</li>
+ * </ul>
+ * Changes which would invalidate the remaining schedules, like removing a
+ * required course, or making a required course extra, still require
+ * generating every schedule.
+ * <br><br>
+ * Sections which have not changed since the last generation are kept as the
+ * same {@code UniqueSection} objects, so schedules which are still valid are
+ * kept as they are.
+ */
+final class ScheduleUpdater {
+    private final SchedulerDataPlugin plugin;
+
+    private final List<CourseDescriptor> required
+            = new ArrayList<CourseDescriptor>();
+    private final List<CourseDescriptor> extra
+            = new ArrayList<CourseDescriptor>();
+    /** The allowed sections of each course, by time mask. */
+    private final Map<CourseDescriptor, Map<WeekMask<?>, UniqueSection>> sections
+            = new HashMap<CourseDescriptor, Map<WeekMask<?>, UniqueSection>>();
+    /** The allowed sections of each course, in search order. */
+    private final Map<CourseDescriptor, UniqueSection[]> levels
+            = new HashMap<CourseDescriptor, UniqueSection[]>();
+
+    /**
+     * Creates an updater for schedules of the given sections.
+     * @param plugin the plugin used to create schedules
+     * @param required the allowed sections of each required course, in
+     *        search order
+     * @param extra the allowed sections of each extra course, in search order
+     * @param previous the updater of the last generation, whose sections are
+     *        reused where they have not changed, or {@code null}
+     */
+    ScheduleUpdater(SchedulerDataPlugin plugin,
+            List<Map.Entry<CourseDescriptor, SortedSet<UniqueSection>>> required,
+            List<Map.Entry<CourseDescriptor, SortedSet<UniqueSection>>> extra,
+            ScheduleUpdater previous) {
+        this.plugin = plugin;
+
+        addCourses(this.required, required, previous);
+        addCourses(this.extra, extra, previous);
+    }
+
+    private void addCourses(List<CourseDescriptor> courses,
+            List<Map.Entry<CourseDescriptor, SortedSet<UniqueSection>>> entries,
+            ScheduleUpdater previous) {
+        for (Map.Entry<CourseDescriptor, SortedSet<UniqueSection>> entry
+                : entries) {
+            CourseDescriptor course = entry.getKey();
+            Map<WeekMask<?>, UniqueSection> old = previous == null ? null
+                    : previous.sections.get(course);
+
+            SortedSet<UniqueSection> good = entry.getValue();
+            UniqueSection[] level = new UniqueSection[good.size()];
+            Map<WeekMask<?>, UniqueSection> byMask
+                    = new HashMap<WeekMask<?>, UniqueSection>(good.size());
+            int i = 0;
+            for (UniqueSection section : good) {
+                UniqueSection oldSection = old == null ? null
+                        : old.get(section.getTimeMask());
+                if (oldSection != null && oldSection.getSectionDescriptors()
+                        .equals(section.getSectionDescriptors())) {
+                    section = oldSection;
+                }
+                level[i++] = section;
+                byMask.put(section.getTimeMask(), section);
+            }
+            courses.add(course);
+            sections.put(course, byMask);
+            levels.put(course, level);
+        }
+    }
+
+    /**
+     * Returns the allowed sections of each required course, in search order.
+     */
+    UniqueSection[][] getRequiredLevels() { return getLevels(required); }
+
+    /**
+     * Returns the allowed sections of each extra course, in search order.
+     */
+    UniqueSection[][] getExtraLevels() { return getLevels(extra); }
+
+    private SearchKernel newKernel(List<CourseDescriptor> required,
+            List<CourseDescriptor> extra) {
+        return new SearchKernel(plugin, getLevels(required), getLevels(extra));
+    }
+
+    private UniqueSection[][] getLevels(List<CourseDescriptor> courses) {
+        UniqueSection[][] result = new UniqueSection[courses.size()][];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = levels.get(courses.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the schedules generated by the given updater can be
+     * {@linkplain #update updated} to this updater's sections. This is not
+     * possible if a required course was removed or made extra, or an extra
+     * course was made required.
+     */
+    boolean canUpdate(ScheduleUpdater previous) {
+        if (!required.containsAll(previous.required)) return false;
+        for (CourseDescriptor course : previous.extra) {
+            if (required.contains(course)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Returns the schedules of this updater's sections, given the schedules
+     * of the given updater's sections. Schedules which are still valid keep
+     * their order, and new schedules follow them.
+     * @param previous the updater the given schedules were generated with,
+     *        which this updater must be able to {@linkplain #canUpdate
+     *        update}
+     * @param schedules every schedule of the given updater's sections
+     * @param budget the budget to take room for each schedule from
+     * @param control the control to report progress to
+     * @return every schedule of this updater's sections, or as many as fit
+     *         into the budget; if the control is cancelled, only some of them
+     */
+    List<Schedule> update(ScheduleUpdater previous, List<Schedule> schedules,
+            ScheduleBudget budget, GenerationControl control) {
+        List<Schedule> updated = new ArrayList<Schedule>(schedules.size());
+        for (Schedule schedule : schedules) {
+            if (!control.explored(1)) return updated;
+            Schedule newSchedule = updateSchedule(schedule);
+            if (newSchedule == null) continue;
+            if (!budget.take()) return updated;
+            updated.add(newSchedule);
+        }
+
+        // search for the schedules of the courses which were already
+        // selected which hold a newly allowed section
+        List<CourseDescriptor> keptExtra = new ArrayList<CourseDescriptor>();
+        for (CourseDescriptor course : extra) {
+            if (previous.extra.contains(course)) keptExtra.add(course);
+        }
+        Set<UniqueSection> added = new HashSet<UniqueSection>();
+        addNewSections(added, previous, previous.required);
+        addNewSections(added, previous, keptExtra);
+        if (!added.isEmpty()) {
+            SearchKernel kernel = newKernel(previous.required, keptExtra);
+            long[] include = kernel.getCandidateSet(added);
+            if (kernel.getRequiredLevelCount() > 0) {
+                addAll(updated, kernel.newRequiredSearch(null, include), budget,
+                        control);
+            }
+            if (kernel.getLevelCount() > kernel.getRequiredLevelCount()) {
+                addAll(updated, kernel.newExtraSearch(null, include), budget,
+                        control);
+            }
+        }
+
+        // then add the new courses to them
+        boolean hasRequired = !previous.required.isEmpty();
+        for (CourseDescriptor course : required) {
+            if (previous.required.contains(course)) continue;
+
+            List<Schedule> extended = extend(updated, hasRequired,
+                    levels.get(course), budget, control);
+            budget.release(updated.size());
+            updated = extended;
+            hasRequired = true;
+        }
+        for (CourseDescriptor course : extra) {
+            if (previous.extra.contains(course)) continue;
+
+            updated.addAll(extend(updated, hasRequired, levels.get(course),
+                    budget, control));
+        }
+        return updated;
+    }
+
+    /**
+     * Returns the given schedule with its sections replaced by this
+     * updater's, or {@code null} if any of them is no longer allowed.
+     */
+    private Schedule updateSchedule(Schedule schedule) {
+        Collection<UniqueSection> old = schedule.getSections();
+        UniqueSection[] updated = null;
+        int i = 0;
+        for (UniqueSection section : old) {
+            Map<WeekMask<?>, UniqueSection> byMask
+                    = sections.get(section.getCourseDescriptor());
+            if (byMask == null) return null;
+            UniqueSection current = byMask.get(section.getTimeMask());
+            if (current == null) return null;
+
+            if (current != section) {
+                if (updated == null) {
+                    updated = old.toArray(new UniqueSection[old.size()]);
+                }
+                updated[i] = current;
+            }
+            i++;
+        }
+        if (updated == null) return schedule;
+
+        return ScheduleNode.getInstance(plugin, Arrays.asList(updated));
+    }
+
+    /**
+     * Adds the sections of the given courses which the given updater did not
+     * allow to the given set.
+     */
+    private void addNewSections(Set<UniqueSection> added,
+            ScheduleUpdater previous, List<CourseDescriptor> courses) {
+        for (CourseDescriptor course : courses) {
+            Map<WeekMask<?>, UniqueSection> old = previous.sections.get(course);
+            for (UniqueSection section : levels.get(course)) {
+                if (!old.containsKey(section.getTimeMask())) added.add(section);
+            }
+        }
+    }
+
+    /**
+     * Returns each of the given schedules with each of the given sections
+     * which fits into it added. If the schedules do not hold a required
+     * course, each section is also returned on its own.
+     */
+    private List<Schedule> extend(List<Schedule> schedules,
+            boolean hasRequired, UniqueSection[] level, ScheduleBudget budget,
+            GenerationControl control) {
+        List<Schedule> extended = new ArrayList<Schedule>();
+        if (!hasRequired) {
+            for (UniqueSection section : level) {
+                if (!budget.take()) return extended;
+                extended.add(new ScheduleNode(plugin, null, section));
+            }
+        }
+        for (Schedule schedule : schedules) {
+            if (!control.explored(1)) return extended;
+            WeekMask<?> mask = schedule.getTimeMask();
+            ScheduleNode parent = null;
+            for (UniqueSection section : level) {
+                if (!section.getTimeMask().fitsInto(mask)) continue;
+                if (!budget.take()) return extended;
+
+                if (parent == null) parent = getNode(schedule);
+                extended.add(new ScheduleNode(plugin, parent, section));
+            }
+        }
+        return extended;
+    }
+
+    /**
+     * Returns the given schedule as a {@code ScheduleNode}, so that
+     * schedules extending it can share its nodes.
+     */
+    private ScheduleNode getNode(Schedule schedule) {
+        if (schedule instanceof ScheduleNode) return (ScheduleNode) schedule;
+        else return ScheduleNode.getInstance(plugin, schedule.getSections());
+    }
+
+    private static void addAll(List<Schedule> schedules,
+            SearchKernel.Search search, ScheduleBudget budget,
+            GenerationControl control) {
+        search.setControl(control);
+        while (search.next()) {
+            if (!budget.take()) return;
+            schedules.add(search.createSchedule());
+        }
+    }
+}
@@ -33,11 +33,12 @@
 
 package edu.rpi.scheduler.engine;
 
+import edu.rpi.scheduler.DefensiveTools;
 import edu.rpi.scheduler.schedb.CourseDescriptor;
-import edu.rpi.scheduler.schedb.DefaultSchedule;
 import edu.rpi.scheduler.schedb.SectionDescriptor;
 import edu.rpi.scheduler.schedb.UniqueSection;
 import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.WeekMaskPool;
 import edu.rpi.scheduler.schedb.spec.Department;
 import edu.rpi.scheduler.schedb.spec.Schedule;
 import edu.rpi.scheduler.schedb.spec.SchedulerData;
@@ -57,6 +58,11 @@ import java.util.Map;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Represents a set of courses, constraints, and, ultimately, schedules
@@ -96,6 +102,7 @@ public class SchedulerEngine {
 
     private SchedulerDataPlugin schedulerPlugin = null;
     private SchedulerData schedulerData = null;
+    private ConflictIndex conflictIndex = null;
 
     private Map<CourseDescriptor, SelectedCourse> selectedCourses
             = new LinkedHashMap<CourseDescriptor, SelectedCourse>();
@@ -104,13 +111,38 @@ public class SchedulerEngine {
     private Collection<SectionDescriptor> blockedSections
             = new ArrayList<SectionDescriptor>();
 
-    private List<Schedule> possibleSchedules = Collections.emptyList();
+    private RankedSchedules possibleSchedules
+            = new RankedSchedules(Collections.<Schedule>emptyList());
 
     private boolean needsGenerating = true;
     private volatile boolean working;
+    /** The control of the generation in progress, if any. */
+    private GenerationControl generation = null;
 
     private Comparator<? super Schedule> lastComparator = null;
 
+    /**
+     * The sections the current schedules were generated from, or
+     * {@code null} if they must be generated from scratch.
+     */
+    private ScheduleUpdater generated = null;
+
+    private ScheduleGenerator generator = ScheduleGenerator.KERNEL;
+    private int parallelism = 1;
+    private ExecutorService executor = null;
+    private ExecutorService rankingExecutor = null;
+    private List<Comparator<? super Schedule>> rankingOrders
+            = Collections.emptyList();
+
+    /** The answers of the feasibility oracle for the current courses. */
+    private Map<CourseDescriptor, Boolean> feasibility
+            = new HashMap<CourseDescriptor, Boolean>();
+    private FeasibilityOracle oracle = null;
+
+    private int maxSchedules = Integer.MAX_VALUE;
+    private boolean truncated = false;
+    private boolean familyGrouping = false;
+
     public SchedulerEngine() {
     }
 
@@ -122,10 +154,25 @@ public class SchedulerEngine {
         return schedulerData;
     }
 
-    public synchronized void setSchedulerData(SchedulerData schedulerData) {
-        this.schedulerData = schedulerData;
-        schedulerPlugin = schedulerData.getDataContext().getSchedulerPlugin();
-        blockedTime = schedulerPlugin.getTimeRepresentation().newWeekMask();
+    public void setSchedulerData(SchedulerData schedulerData) {
+        ConflictIndex previous;
+        synchronized (this) {
+            previous = conflictIndex;
+        }
+        // indexing a catalog takes a while, so it's done outside the lock
+        ConflictIndex index = ConflictIndex.getInstance(schedulerData,
+                previous);
+
+        synchronized (this) {
+            this.schedulerData = schedulerData;
+            schedulerPlugin = schedulerData.getDataContext()
+                    .getSchedulerPlugin();
+            blockedTime = schedulerPlugin.getTimeRepresentation()
+                    .newWeekMask().snapshot();
+            conflictIndex = index;
+            generated = null;
+            resetFeasibility();
+        }
     }
 
     /**
@@ -156,6 +203,7 @@ public class SchedulerEngine {
 
         WeekMask<?> newBlocked = schedulerPlugin.getTimeRepresentation().newWeekMask();
         newBlocked.merge(mask);
+        newBlocked = newBlocked.snapshot();
         this.blockedTime = newBlocked;
 
         if (!newBlocked.equals(old)) {
@@ -165,13 +213,12 @@ public class SchedulerEngine {
 
     /**
      * Returns the time mask that the user has blocked out, disallowing any
-     * classes during this time.
+     * classes during this time. The mask is frozen, so it is not copied;
+     * use {@link WeekMask#mutableCopy} to edit it.
      * @return the time mask the user has blocked out
      */
     public synchronized WeekMask<?> getBlockedTime() {
-        WeekMask<?> mask = schedulerPlugin.getTimeRepresentation().newWeekMask();
-        mask.merge(blockedTime);
-        return mask;
+        return blockedTime;
     }
 
     /**
@@ -185,24 +232,273 @@ public class SchedulerEngine {
     /**
      * Generates schedules from the given constraints, if necessary. If no
      * constraints have changed since the last call to
-     * {@code generateSchedules}, then this call will not do anything.
+     * {@code generateSchedules}, then this call will not do anything. If
+     * another thread is generating schedules, this waits for it to finish
+     * first.
+     * <br><br>
+     * The engine is not locked while the schedules are generated, so the
+     * constraints may be changed from other threads in the meantime. Doing
+     * so {@linkplain #cancelGeneration cancels} the generation, as its
+     * schedules would be out of date. Interrupting the generating thread
+     * cancels it too. A cancelled generation leaves the generated schedules
+     * as they were.
+     * <br><br>
+     * Where possible, the schedules from the last call are updated rather
+     * than generated again: schedules which break new constraints are
+     * dropped, only schedules holding newly allowed sections are searched
+     * for, and new courses are added to the existing schedules. The
+     * schedules are the same either way, though before {@linkplain #sortBy
+     * sorting} their order may differ.
      */
-    public synchronized void generateSchedules() {
-        if (working || !needsGenerating) return;
-        try {
-            working = true;
+    public void generateSchedules() {
+        ScheduleBudget budget;
+        GenerationControl control;
+        ScheduleUpdater previous;
+        ScheduleUpdater updater;
+        List<Schedule> oldSchedules = null;
+        Comparator<? super Schedule> comp;
+        SchedulerDataPlugin plugin;
+        ScheduleGenerator generator;
+        GenerationRequest request;
+        boolean grouping;
+        synchronized (this) {
+            try {
+                while (working) wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (!needsGenerating) return;
 
-            List<Schedule> schedules = reallyGenerateSchedules();
-            possibleSchedules = new ArrayList<Schedule>(schedules);
-            Comparator<? super Schedule> lastcomp = lastComparator;
-            if (lastcomp != null) sortBy(lastcomp);
+            working = true;
             needsGenerating = false;
+            budget = new ScheduleBudget(maxSchedules);
+            control = new GenerationControl(budget) {
+                void reportProgress(GenerationProgress progress) {
+                    fireProgressEvent(progress);
+                }
+            };
+            generation = control;
+
+            previous = generated;
+            List<CourseDescriptor> required = getRequiredCourses();
+            List<CourseDescriptor> extra = getExtraCourses();
+            updater = new ScheduleUpdater(schedulerPlugin,
+                    getGoodSections(required), getGoodSections(extra),
+                    previous);
+            grouping = familyGrouping;
+            if (previous != null && !grouping && updater.canUpdate(previous)) {
+                oldSchedules = new ArrayList<Schedule>(possibleSchedules);
+            }
+            comp = lastComparator;
+            plugin = schedulerPlugin;
+            generator = this.generator;
+            int threads = parallelism;
+            request = new GenerationRequest(plugin, required, extra,
+                    blockedTime, Collections.unmodifiableList(
+                    new ArrayList<SectionDescriptor>(blockedSections)),
+                    updater.getRequiredLevels(), updater.getExtraLevels(),
+                    budget, control, threads > 1 ? getExecutor() : null,
+                    threads);
+        }
+
+        boolean finished = false;
+        boolean wasTruncated = false;
+        int generatedCount = 0;
+        try {
+            RankedSchedules schedules;
+            if (oldSchedules != null) {
+                schedules = new RankedSchedules(updater.update(previous,
+                        oldSchedules, budget, control));
+            } else {
+                List<Schedule> list = generator.generateSchedules(request);
+                if (grouping && !control.isCancelled()) {
+                    list = ScheduleFamily.group(new SearchKernel(plugin,
+                            updater.getRequiredLevels(),
+                            updater.getExtraLevels()), list);
+                }
+                schedules = new RankedSchedules(list);
+            }
+            while (true) {
+                if (comp != null && !control.isCancelled()) {
+                    schedules.rank(comp, request.getExecutor(),
+                            request.getParallelism());
+                }
+                synchronized (this) {
+                    if (control.isCancelled()) break;
+                    // the sort method may have changed in the meantime, in
+                    // which case the schedules are ranked by the new one
+                    // outside the lock
+                    if (lastComparator != comp) {
+                        comp = lastComparator;
+                        continue;
+                    }
+                    schedules.setOrder(comp);
+                    possibleSchedules = schedules;
+                    rankInBackground();
+
+                    // an incomplete set of schedules can't be updated later
+                    truncated = budget.isExceeded();
+                    generated = truncated ? null : updater;
+                    finished = true;
+                    wasTruncated = truncated;
+                    generatedCount = schedules.size();
+                    break;
+                }
+            }
         } finally {
-            working = false;
+            synchronized (this) {
+                if (!finished) needsGenerating = true;
+                working = false;
+                generation = null;
+                notifyAll();
+            }
         }
+        if (!finished) return;
+
+        if (wasTruncated) fireTruncatedEvent(generatedCount);
         fireGeneratedEvent();
     }
 
+    /**
+     * Cancels the schedule generation in progress on another thread, if any.
+     * The generated schedules are left as they were, and the next call to
+     * {@link #generateSchedules} generates them again.
+     */
+    public synchronized void cancelGeneration() {
+        if (generation != null) generation.cancel();
+    }
+
+    /**
+     * Sets the most schedules {@link #generateSchedules} may generate. If
+     * there are more possible schedules than this, generation stops once
+     * this many have been generated, and {@link #isTruncated} returns
+     * {@code true}. This keeps selections with a huge number of possible
+     * schedules from using up all available memory. By default there is no
+     * limit.
+     * @param max the most schedules to generate
+     */
+    public synchronized void setMaxSchedules(int max) {
+        DefensiveTools.checkRange(max, "max", 1);
+
+        if (max == maxSchedules) return;
+        maxSchedules = max;
+        if (truncated || possibleSchedules.size() > max) setNeedsGenerating();
+    }
+
+    /**
+     * Returns the most schedules {@link #generateSchedules} may generate.
+     * @return the most schedules to generate
+     */
+    public synchronized int getMaxSchedules() { return maxSchedules; }
+
+    /**
+     * Returns whether the last call to {@link #generateSchedules} stopped
+     * because there were more possible schedules than the {@linkplain
+     * #setMaxSchedules limit}. If so, the {@linkplain #getGeneratedSchedules
+     * generated schedules} are only some of the possible schedules.
+     * @return whether the generated schedules are incomplete
+     */
+    public synchronized boolean isTruncated() { return truncated; }
+
+    /**
+     * Returns whether the courses or constraints have changed since the
+     * schedules were last generated, so that {@link #generateSchedules}
+     * would generate them again.
+     * @return whether the generated schedules are out of date
+     */
+    public synchronized boolean needsGenerating() { return needsGenerating; }
+
+    /**
+     * Returns a cursor over the schedules possible with the current
+     * constraints. Unlike {@link #generateSchedules}, no schedules are built
+     * until they are read from the cursor, so the first schedule is
+     * available almost immediately and selections with too many schedules
+     * to fit into memory can still be browsed. The cursor works from a
+     * snapshot of the current constraints.
+     * @return a cursor over the possible schedules, in generation order
+     */
+    public ScheduleCursor openSchedules() {
+        return openSchedules(null);
+    }
+
+    /**
+     * Returns the best schedules possible with the current constraints, in
+     * the order given by the given comparator. This is the same as the first
+     * {@code k} schedules of {@link #getGeneratedSchedules} after a call to
+     * {@link #sortBy sortBy(comp)}, but no more than {@code k} schedules are
+     * kept at once. If the comparator is a {@link BoundedComparator}, parts
+     * of the search which cannot produce anything better than the best
+     * {@code k} schedules found so far are skipped, so this is much faster
+     * than generating every schedule for large selections.
+     * <br><br>
+     * This does not change the list of {@linkplain #getGeneratedSchedules
+     * generated schedules}.
+     * @param comp the comparator to rank schedules by
+     * @param k the maximum number of schedules to return
+     * @return the best {@code k} schedules, best first
+     */
+    public List<Schedule> generateTopSchedules(Comparator<? super Schedule> comp,
+            int k) {
+        DefensiveTools.checkNull(comp, "comp");
+        DefensiveTools.checkRange(k, "k", 1);
+
+        TopSchedules top = new TopSchedules(comp, k);
+        ScheduleCursor cursor = openSchedules(top);
+        while (cursor.hasNext()) top.offer(cursor.next());
+
+        return top.getSchedules();
+    }
+
+    /**
+     * Returns the Pareto-optimal schedules possible with the current
+     * constraints, by the given metrics: those for which no other possible
+     * schedule is at least as good by every metric. These are the schedules
+     * worth choosing between when trading off, say, days of class against
+     * time between classes. Of several schedules with the same value for
+     * every metric, only one is returned.
+     * <br><br>
+     * Only the schedules which are not yet dominated are kept during the
+     * search, and partial schedules which could only lead to dominated
+     * schedules are skipped, so this takes far less time and memory than
+     * generating every schedule. This does not change the list of
+     * {@linkplain #getGeneratedSchedules generated schedules}.
+     * @param metrics the metrics to compare schedules by
+     * @return the Pareto-optimal schedules, ordered by their value for the
+     *         first metric, then the second, and so on
+     */
+    public List<Schedule> generateParetoSchedules(
+            List<? extends ScheduleMetric> metrics) {
+        DefensiveTools.checkNull(metrics, "metrics");
+        if (metrics.isEmpty()) {
+            throw new IllegalArgumentException("metrics cannot be empty");
+        }
+
+        ParetoFront front = new ParetoFront(metrics);
+        ScheduleCursor cursor = openSchedules(front);
+        while (cursor.hasNext()) front.offer(cursor.next());
+
+        return front.getSchedules();
+    }
+
+    /**
+     * Returns the number of schedules possible with the current constraints,
+     * without generating them. This is the number of schedules {@link
+     * #generateSchedules} would generate, and is much faster to compute and
+     * takes very little memory, so it can be used to tell whether there are
+     * more schedules than the {@linkplain #setMaxSchedules limit} before
+     * generating them, or to show the number of schedules as the user
+     * changes constraints.
+     * @return the number of possible schedules
+     */
+    public long countSchedules() {
+        return newKernel().countSchedules();
+    }
+
+    private ScheduleCursor openSchedules(SearchKernel.Pruner pruner) {
+        return new ScheduleCursor(newKernel(), pruner);
+    }
+
     private Set<EngineListener> listeners = new LinkedHashSet<EngineListener>();
 
     public synchronized void addEngineListener(EngineListener l) {
@@ -213,45 +509,126 @@ public class SchedulerEngine {
         listeners.remove(l);
     }
 
+    private synchronized void fireProgressEvent(GenerationProgress progress) {
+        for (EngineListener listener : listeners) {
+            listener.generationProgressed(this, progress);
+        }
+    }
+
+    private synchronized void fireTruncatedEvent(int generated) {
+        for (EngineListener listener : listeners) {
+            listener.schedulesTruncated(this, generated);
+        }
+    }
+
     private synchronized void fireGeneratedEvent() {
         for (EngineListener listener : listeners) {
             listener.schedulesGenerated(this);
         }
     }
 
-    private synchronized List<Schedule> reallyGenerateSchedules() {
-        List<Schedule> schedules = new ArrayList<Schedule>();
+    /**
+     * Compiles a search kernel for the current courses and constraints.
+     */
+    private synchronized SearchKernel newKernel() {
+        UniqueSection[][] required = getSectionLevels(getRequiredCourses());
+        UniqueSection[][] extra = getSectionLevels(getExtraCourses());
+        return new SearchKernel(schedulerPlugin, required, extra);
+    }
+
+    /**
+     * Sets whether schedules of the same courses whose classes are all at the
+     * same times are grouped into one {@link ScheduleFamily} in the
+     * {@linkplain #getGeneratedSchedules generated schedules}. Such schedules
+     * rank the same by every sort method, so grouping them makes the list
+     * shorter and faster to sort; each family's schedules are found again
+     * when it is opened. The {@linkplain #setMaxSchedules maximum number of
+     * schedules} still counts each schedule in a family. Grouping is off by
+     * default.
+     * <br><br>
+     * While grouping is on, the schedules are always generated from scratch
+     * rather than updated from the last ones.
+     * @param grouping whether to group schedules into families
+     */
+    public synchronized void setFamilyGrouping(boolean grouping) {
+        if (grouping == familyGrouping) return;
+        familyGrouping = grouping;
+        generated = null;
+        setNeedsGenerating();
+    }
 
-        List<CourseDescriptor> requiredCourses = getRequiredCourses();
-        if (!requiredCourses.isEmpty()) {
-            List<Map.Entry<CourseDescriptor,SortedSet<UniqueSection>>> reqsections
-                    = getGoodSections(requiredCourses);
-            buildRequiredSchedules(schedules, null, reqsections, 0);
+    /**
+     * Returns whether schedules with the same class times are grouped into
+     * families.
+     * @return whether schedules are grouped into families
+     */
+    public synchronized boolean isFamilyGrouping() { return familyGrouping; }
 
-            if (schedules.isEmpty()) return schedules;
-        }
+    /**
+     * Sets the generator used by {@link #generateSchedules}. Every generator
+     * produces the same schedules, so the schedules already generated are
+     * kept; only their order may differ the next time they are generated.
+     * Updating the generated schedules when the constraints change, and the
+     * other ways of reading schedules, like {@link #openSchedules}, do not
+     * depend on the generator.
+     * @param generator the generator to use
+     */
+    public synchronized void setScheduleGenerator(ScheduleGenerator generator) {
+        DefensiveTools.checkNull(generator, "generator");
 
-        List<CourseDescriptor> extraCourses = getExtraCourses();
-        List<Map.Entry<CourseDescriptor,SortedSet<UniqueSection>>> optsections
-                = getGoodSections(extraCourses);
+        this.generator = generator;
+    }
 
-        List<Schedule> optschedules = new ArrayList<Schedule>();
-        if (!optsections.isEmpty()) {
-            if (schedules.isEmpty()) {
-                buildExtraSchedules(optschedules, null, optsections, 0);
-            } else {
-                for (Schedule schedule : schedules) {
-                    buildExtraSchedules(optschedules, schedule, optsections, 0);
-                }
-            }
-        }
+    /**
+     * Returns the generator used by {@link #generateSchedules}. By default
+     * this is {@link ScheduleGenerator#KERNEL}.
+     * @return the generator used to generate schedules
+     */
+    public synchronized ScheduleGenerator getScheduleGenerator() {
+        return generator;
+    }
 
-        List<Schedule> totalSchedules = new ArrayList<Schedule>(schedules.size()
-                + optschedules.size());
-        totalSchedules.addAll(schedules);
-        totalSchedules.addAll(optschedules);
+    /**
+     * Sets the number of threads used to generate schedules. If this is
+     * {@code 1}, the default, schedules are generated on the thread which
+     * calls {@link #generateSchedules}. Otherwise the search is split up and
+     * run on a pool of this many threads; the schedules generated, and their
+     * order, are the same either way.
+     * @param threads the number of threads to generate schedules with
+     */
+    public synchronized void setParallelism(int threads) {
+        DefensiveTools.checkRange(threads, "threads", 1);
+
+        if (threads == parallelism) return;
+        parallelism = threads;
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
 
-        return totalSchedules;
+    /**
+     * Returns the number of threads used to generate schedules.
+     * @return the number of threads used to generate schedules
+     */
+    public synchronized int getParallelism() { return parallelism; }
+
+    private synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(parallelism,
+                    new ThreadFactory() {
+                        private int count = 0;
+
+                        public synchronized Thread newThread(Runnable r) {
+                            count++;
+                            Thread thread = new Thread(r,
+                                    "SchedulerEngine worker " + count);
+                            thread.setDaemon(true);
+                            return thread;
+                        }
+                    });
+        }
+        return executor;
     }
 
     public synchronized Collection<SelectedCourse> getSelectedCourses() {
@@ -291,13 +668,21 @@ public class SchedulerEngine {
         // cache this so we don't keep acessing the field
         WeekMask<?> blockedTime = this.blockedTime;
 
+        // sections with the same times share an interned mask, so they can
+        // be grouped by the mask's id; any other masks go in a map
+        WeekMaskPool pool = schedulerPlugin.getTimeRepresentation().getMaskPool();
+        UniqueSection[] byId = new UniqueSection[pool.size()];
+        Map<WeekMask<?>,UniqueSection> unique
+                = new HashMap<WeekMask<?>, UniqueSection>();
+
         for (CourseDescriptor course : selected) {
             Collection<Section> sects = course.getActualCourse().getSections();
 
             SortedSet<UniqueSection> good
                     = new TreeSet<UniqueSection>(LOWNUM_COMPARATOR);
-            Map<WeekMask<?>,UniqueSection> unique
-                    = new HashMap<WeekMask<?>, UniqueSection>(sects.size());
+            int[] usedIds = new int[sects.size()];
+            int used = 0;
+            unique.clear();
             sections.put(course, good);
 
             Outer: for (Section section : sects) {
@@ -306,11 +691,18 @@ public class SchedulerEngine {
                 }
 
                 WeekMask<?> mask = section.getWeekMask();
-                UniqueSection sect = unique.get(mask);
+                int id = mask.getPool() == pool ? mask.getId() : -1;
+                boolean indexed = id != -1 && id < byId.length;
+                UniqueSection sect = indexed ? byId[id] : unique.get(mask);
                 boolean first = sect == null;
                 if (first) {
                     sect = new UniqueSection(mask);
-                    unique.put(mask, sect);
+                    if (indexed) {
+                        byId[id] = sect;
+                        usedIds[used++] = id;
+                    } else {
+                        unique.put(mask, sect);
+                    }
                 }
                 sect.addSection(new SectionDescriptor(course, section));
 
@@ -318,6 +710,7 @@ public class SchedulerEngine {
                     good.add(sect);
                 }
             }
+            for (int i = 0; i < used; i++) byId[usedIds[i]] = null;
         }
         Set<Map.Entry<CourseDescriptor,SortedSet<UniqueSection>>> entrySet = sections.entrySet();
 
@@ -329,73 +722,297 @@ public class SchedulerEngine {
         return entries;
     }
 
-    private void buildRequiredSchedules(List<Schedule> schedules, DefaultSchedule schedule,
-            List<Map.Entry<CourseDescriptor,SortedSet<UniqueSection>>> required,
-            int index) {
-        SchedulerDataPlugin schedulerPlugin = this.schedulerPlugin;
+    /**
+     * Returns the {@linkplain #getGoodSections good sections} of the given
+     * courses as arrays, one per course, in search order.
+     */
+    private synchronized UniqueSection[][] getSectionLevels(
+            List<CourseDescriptor> selected) {
+        if (selected.isEmpty()) return new UniqueSection[0][];
+
+        List<Map.Entry<CourseDescriptor,SortedSet<UniqueSection>>> entries
+                = getGoodSections(selected);
+        UniqueSection[][] levels = new UniqueSection[entries.size()][];
+        for (int i = 0; i < levels.length; i++) {
+            SortedSet<UniqueSection> sections = entries.get(i).getValue();
+            levels[i] = sections.toArray(new UniqueSection[sections.size()]);
+        }
+        return levels;
+    }
 
-        Set<UniqueSection> reqsections = required.get(index).getValue();
-        int newindex = index + 1;
-        boolean last = newindex == required.size();
+    private synchronized void setNeedsGenerating() {
+        needsGenerating = true;
+        resetFeasibility();
+        cancelGeneration();
+    }
 
-        for (UniqueSection section : reqsections) {
-            if (schedule != null && !schedule.canAdd(section)) {
-                continue;
-            }
+    private synchronized void resetFeasibility() {
+        feasibility = new HashMap<CourseDescriptor, Boolean>();
+        oracle = null;
+    }
 
-            DefaultSchedule sched;
-            if (schedule == null) {
-                sched = new DefaultSchedule(schedulerPlugin);
-            } else {
-                sched = new DefaultSchedule(schedulerPlugin, schedule);
-            }
+    /**
+     * Returns whether there is at least one schedule of the required courses
+     * which meets the current constraints. Like {@link #isFeasibleWith}, this
+     * stops at the first schedule found, and the answer is kept until the
+     * courses or constraints change.
+     * @return whether the required courses can be scheduled
+     */
+    public boolean isFeasible() {
+        FeasibilityOracle oracle;
+        synchronized (this) {
+            oracle = getOracle();
+        }
+        return oracle.isFeasible();
+    }
 
-            sched.addSection(section);
+    /**
+     * Returns whether the required courses can be scheduled, if that is
+     * already known. Unlike {@link #isFeasible}, this never searches, so it
+     * can be called while painting.
+     * @return whether the required courses can be scheduled, or {@code null}
+     *         if that hasn't been worked out since they last changed
+     */
+    public synchronized Boolean getCachedFeasibility() {
+        return oracle == null ? null : oracle.getCachedFeasibility();
+    }
 
-            if (last) schedules.add(sched);
-            else buildRequiredSchedules(schedules, sched, required, newindex);
-        }
+    /**
+     * Returns whether the given course could be added to the required
+     * courses, if that is already known. Unlike {@link #isFeasibleWith}, this
+     * never searches, so it can be called while painting.
+     * @param course the course to check
+     * @return whether there is a schedule of the required courses and the
+     *         given course, or {@code null} if that hasn't been worked out
+     *         since the courses or constraints last changed
+     */
+    public synchronized Boolean getCachedFeasibility(CourseDescriptor course) {
+        DefensiveTools.checkNull(course, "course");
+
+        return feasibility.get(course);
     }
 
-    private void buildExtraSchedules(List<Schedule>  schedules, Schedule schedule,
-            List<Map.Entry<CourseDescriptor,SortedSet<UniqueSection>>> extra,
-            int index) {
-        SchedulerDataPlugin schedulerPlugin = this.schedulerPlugin;
+    /**
+     * Returns whether the given course could be added to the required
+     * courses, that is, whether at least one schedule of the required
+     * courses and the given course meets the current constraints. Extra
+     * courses are not considered. The search for such a schedule stops at the
+     * first one found, and the answer is kept until the courses or
+     * constraints change.
+     * @param course the course to check
+     * @return whether there is a schedule of the required courses and the
+     *         given course
+     */
+    public boolean isFeasibleWith(CourseDescriptor course) {
+        DefensiveTools.checkNull(course, "course");
 
-        Set<UniqueSection> extraSections = extra.get(index).getValue();
-        int newindex = index + 1;
-        boolean last = newindex == extra.size();
+        return getFeasibility(Collections.singleton(course)).get(course);
+    }
 
-        for (UniqueSection section : extraSections) {
-            if (schedule != null && !schedule.canAdd(section)) {
-                continue;
+    /**
+     * Returns whether each of the given courses {@linkplain #isFeasibleWith
+     * could be added} to the required courses. If the engine uses more than
+     * one {@linkplain #setParallelism thread}, the courses are checked in
+     * parallel.
+     * @param courses the courses to check, such as a department's courses
+     * @return whether there is a schedule of the required courses and each
+     *         given course, in the order of the given courses
+     */
+    public Map<CourseDescriptor, Boolean> getFeasibility(
+            Collection<CourseDescriptor> courses) {
+        DefensiveTools.checkNull(courses, "courses");
+
+        final Map<CourseDescriptor, Boolean> results
+                = new LinkedHashMap<CourseDescriptor, Boolean>();
+        Map<CourseDescriptor, Boolean> cache;
+        final FeasibilityOracle oracle;
+        final List<CourseDescriptor> unknown = new ArrayList<CourseDescriptor>();
+        final List<UniqueSection[]> levels = new ArrayList<UniqueSection[]>();
+        final List<Integer> ids = new ArrayList<Integer>();
+        ExecutorService executor;
+        int threads;
+        synchronized (this) {
+            cache = feasibility;
+            for (CourseDescriptor course : courses) {
+                results.put(course, cache.get(course));
+            }
+            for (Map.Entry<CourseDescriptor, Boolean> entry
+                    : results.entrySet()) {
+                if (entry.getValue() == null) unknown.add(entry.getKey());
+            }
+            if (unknown.isEmpty()) return results;
+
+            oracle = getOracle();
+            for (CourseDescriptor course : unknown) {
+                SelectedCourse selected = selectedCourses.get(course);
+                if (selected != null && !selected.isExtra()) {
+                    levels.add(null);
+                } else {
+                    UniqueSection[][] level = getSectionLevels(
+                            Collections.singletonList(course));
+                    levels.add(level[0]);
+                }
+                ids.add(conflictIndex == null ? -1 : conflictIndex.getId(course));
             }
+            threads = Math.min(parallelism, unknown.size());
+            executor = threads > 1 ? getExecutor() : null;
+        }
 
-            DefaultSchedule sched;
-            if (schedule == null) {
-                sched = new DefaultSchedule(schedulerPlugin);
-            } else {
-                sched = new DefaultSchedule(schedulerPlugin, schedule);
+        final Boolean[] answers = new Boolean[unknown.size()];
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(threads);
+        for (int t = 0; t < threads; t++) {
+            final int first = t;
+            final int step = threads;
+            tasks.add(new Callable<Object>() {
+                public Object call() {
+                    for (int i = first; i < answers.length; i += step) {
+                        UniqueSection[] level = levels.get(i);
+                        answers[i] = level == null ? oracle.isFeasible()
+                                : oracle.isFeasibleWith(level, ids.get(i));
+                    }
+                    return null;
+                }
+            });
+        }
+        ScheduleRanker.runAll(tasks, executor);
+
+        for (int i = 0; i < answers.length; i++) {
+            results.put(unknown.get(i), answers[i]);
+        }
+        synchronized (this) {
+            // if the courses changed in the meantime, this is a stale map
+            for (int i = 0; i < answers.length; i++) {
+                cache.put(unknown.get(i), answers[i]);
+            }
+        }
+        return results;
+    }
+
+    private synchronized FeasibilityOracle getOracle() {
+        if (oracle == null) {
+            List<CourseDescriptor> required = getRequiredCourses();
+            UniqueSection[][] levels = getSectionLevels(required);
+            int[] ids = new int[required.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = conflictIndex == null ? -1
+                        : conflictIndex.getId(required.get(i));
             }
+            oracle = new FeasibilityOracle(schedulerPlugin, levels,
+                    conflictIndex, ids);
+        }
+        return oracle;
+    }
 
-            sched.addSection(section);
+    /**
+     * Puts the generated schedules in the order given by the given
+     * comparator, and sorts schedules generated later the same way. The
+     * order of each comparator is kept until the schedules are generated
+     * again, so switching back to an earlier comparator, or to one of the
+     * {@linkplain #setRankingOrders ranking orders} ranked in the
+     * background, is immediate. Otherwise the schedules are ranked here; if
+     * the comparator is a {@link KeyedComparator}, each schedule's key is
+     * computed once and the sort only compares keys, and with more than one
+     * thread set by {@link #setParallelism}, large lists of schedules are
+     * ranked on several threads. The ranking is done without holding up
+     * other calls to this engine, and if the schedules are being ranked by
+     * the same comparator in the background already, this waits for that
+     * ranking instead of doing it again.
+     * <br><br>
+     * Schedules which compare equal are left in the order they were
+     * generated in. If the comparator is {@code null}, the schedules are
+     * put back in generation order.
+     * @param comp the comparator to sort the schedules by, or {@code null}
+     */
+    public void sortBy(Comparator<? super Schedule> comp) {
+        RankedSchedules schedules;
+        ExecutorService executor;
+        int threads;
+        synchronized (this) {
+            lastComparator = comp;
+            schedules = possibleSchedules;
+            executor = parallelism > 1 ? getExecutor() : null;
+            threads = parallelism;
+        }
 
-            schedules.add(sched);
+        if (comp != null) schedules.rank(comp, executor, threads);
 
-            if (!last) {
-                buildExtraSchedules(schedules, sched, extra, newindex);
+        synchronized (this) {
+            // the schedules or the sort method may have changed in the
+            // meantime; newly generated schedules are sorted by whichever
+            // sort method is set when they are done
+            if (possibleSchedules == schedules && lastComparator == comp) {
+                schedules.setOrder(comp);
             }
         }
-        if (!last) buildExtraSchedules(schedules, schedule, extra, newindex);
     }
 
-    private synchronized void setNeedsGenerating() {
-        needsGenerating = true;
+    /**
+     * Sets the comparators the generated schedules are ranked by in the
+     * background each time they are generated, so that a later call to
+     * {@link #sortBy} with any of them is immediate. These would usually be
+     * the ranking methods the user can choose between.
+     * @param comps the comparators to rank the generated schedules by
+     */
+    public synchronized void setRankingOrders(
+            Collection<? extends Comparator<? super Schedule>> comps) {
+        DefensiveTools.checkNull(comps, "comps");
+
+        rankingOrders = new ArrayList<Comparator<? super Schedule>>(comps);
+        rankInBackground();
     }
 
-    public synchronized void sortBy(Comparator<? super Schedule> comp) {
-        lastComparator = comp;
-        Collections.sort(possibleSchedules, comp);
+    /**
+     * Returns the comparators the generated schedules are ranked by in the
+     * background.
+     * @return the comparators the generated schedules are ranked by
+     */
+    public synchronized List<Comparator<? super Schedule>> getRankingOrders() {
+        return Collections.unmodifiableList(rankingOrders);
+    }
+
+    /**
+     * Ranks the generated schedules by each of the {@linkplain
+     * #setRankingOrders ranking orders} they have not been ranked by yet, on
+     * the ranking thread. This stops once the schedules are generated again.
+     */
+    private synchronized void rankInBackground() {
+        final RankedSchedules schedules = possibleSchedules;
+        final List<Comparator<? super Schedule>> comps = rankingOrders;
+        if (schedules.size() < 2 || comps.isEmpty()) return;
+
+        final ExecutorService executor = parallelism > 1 ? getExecutor() : null;
+        final int threads = parallelism;
+        getRankingExecutor().execute(new Runnable() {
+            public void run() {
+                for (Comparator<? super Schedule> comp : comps) {
+                    synchronized (SchedulerEngine.this) {
+                        if (possibleSchedules != schedules) return;
+                    }
+                    try {
+                        schedules.rank(comp, executor, threads);
+                    } catch (RejectedExecutionException e) {
+                        // the thread pool was shut down by setParallelism
+                        return;
+                    }
+                }
+            }
+        });
+    }
+
+    private synchronized ExecutorService getRankingExecutor() {
+        if (rankingExecutor == null) {
+            rankingExecutor = Executors.newSingleThreadExecutor(
+                    new ThreadFactory() {
+                        public Thread newThread(Runnable r) {
+                            Thread thread = new Thread(r,
+                                    "SchedulerEngine ranker");
+                            thread.setDaemon(true);
+                            thread.setPriority(Thread.MIN_PRIORITY);
+                            return thread;
+                        }
+                    });
+        }
+        return rankingExecutor;
     }
 
     /**
@@ -455,7 +1072,26 @@ public class SchedulerEngine {
         for (CourseDescriptor cd : courses) removeCourse(cd);
     }
 
+    /**
+     * Returns whether no section of one of the given courses fits with any
+     * section of the other, so that they can never be taken together. For
+     * courses in the {@linkplain #getSchedulerData catalog} this is looked up
+     * in an index of the whole catalog built when the catalog is set.
+     * @param a a course
+     * @param b another course
+     * @return whether the given courses always conflict
+     */
     public boolean coursesConflict(CourseDescriptor a, CourseDescriptor b) {
+        ConflictIndex index;
+        synchronized (this) {
+            index = conflictIndex;
+        }
+        if (index != null) {
+            int ida = index.getId(a);
+            int idb = index.getId(b);
+            if (ida != -1 && idb != -1) return index.coursesConflict(ida, idb);
+        }
+
         Collection<Section> sections1 = a.getActualCourse().getSections();
         Collection<Section> sections2 = b.getActualCourse().getSections();
         if (sections1.isEmpty() || sections2.isEmpty()) return false;
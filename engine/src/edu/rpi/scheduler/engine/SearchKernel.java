@@ -0,0 +1,848 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.ScheduleNode;
+import edu.rpi.scheduler.schedb.UniqueSection;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.DayMask;
+import edu.rpi.scheduler.schedb.spec.Schedule;
+import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The engine's schedule search, compiled down to primitive arrays. Before
+ * searching, the time masks of every pair of candidate sections are
+ * compared once, and the results are kept as a conflict bit matrix. A
+ * search then only works with candidate indices and bitsets of the
+ * candidates still compatible with what has been chosen so far, and
+ * allocates nothing until a schedule is found and
+ * {@linkplain #createSchedule created}.
+ * <br><br>
+ * Because the search knows which candidates of every later course are still
+ * compatible, it can tell when a choice leaves a required course with no
+ * usable section, and skip that choice right away rather than finding out
+ * levels further down.
+ * <br><br>
+ * The search is made of "levels," one per course: first the required
+ * courses, each of which must be in every schedule, then the extra courses,
+ * each of which may be left out. A kernel is immutable once created, and
+ * any number of {@link Search}es may run on it at once.
+ */
+final class SearchKernel {
+    /**
+     * The most partial results {@link #countSchedules} keeps. Counting still
+     * works past this, only more slowly.
+     */
+    private static final int MAX_COUNT_MEMO = 1 << 18;
+    /**
+     * The number of steps a search takes between checks of its {@link
+     * GenerationControl}.
+     */
+    private static final int STEPS_PER_CHECK = 1024;
+
+    private final SchedulerDataPlugin plugin;
+
+    /** Every candidate section, level by level. */
+    private final UniqueSection[] candidates;
+    /** The index of the first candidate of each level, plus the end. */
+    private final int[] levelStart;
+    private final int requiredLevels;
+    private final int levelCount;
+
+    /** The number of {@code long} words in a set of candidates. */
+    private final int words;
+    /**
+     * The set of candidates each candidate conflicts with, {@code words} per
+     * candidate.
+     */
+    private final long[] conflicts;
+    /**
+     * The number of conflicts between the candidates of each required level
+     * and those of the other required levels.
+     */
+    private final int[] degree;
+
+    /**
+     * Compiles a kernel for the given sections.
+     * @param plugin the plugin used to create schedules
+     * @param required the sections of each required course, in search order
+     * @param extra the sections of each extra course, in search order
+     */
+    SearchKernel(SchedulerDataPlugin plugin, UniqueSection[][] required,
+            UniqueSection[][] extra) {
+        this.plugin = plugin;
+        requiredLevels = required.length;
+        levelCount = required.length + extra.length;
+
+        levelStart = new int[levelCount + 1];
+        int total = 0;
+        for (int i = 0; i < levelCount; i++) {
+            levelStart[i] = total;
+            total += getLevel(required, extra, i).length;
+        }
+        levelStart[levelCount] = total;
+
+        candidates = new UniqueSection[total];
+        for (int i = 0; i < levelCount; i++) {
+            UniqueSection[] level = getLevel(required, extra, i);
+            System.arraycopy(level, 0, candidates, levelStart[i], level.length);
+        }
+
+        // find the blocks of the week each candidate uses, and give each
+        // block used by any candidate its own bit
+        int stride = 0;
+        for (UniqueSection candidate : candidates) {
+            WeekMask<?> mask = candidate.getTimeMask();
+            for (int day = 0; day < 7; day++) {
+                int max = mask.getDayMask(day).getMaxBlockNum();
+                stride = Math.max(stride, max + 1);
+            }
+        }
+        int[] blockBits = new int[7 * stride];
+        Arrays.fill(blockBits, -1);
+        int[][] used = new int[total][];
+        int usedBits = 0;
+        int[] buf = new int[7 * stride];
+        for (int c = 0; c < total; c++) {
+            WeekMask<?> mask = candidates[c].getTimeMask();
+            int n = 0;
+            for (int day = 0; day < 7; day++) {
+                DayMask dayMask = mask.getDayMask(day);
+                if (dayMask.isEmpty()) continue;
+
+                int max = dayMask.getMaxBlockNum();
+                for (int block = 0; block <= max; block++) {
+                    if (!dayMask.isOn(block)) continue;
+
+                    int pos = day * stride + block;
+                    if (blockBits[pos] == -1) blockBits[pos] = usedBits++;
+                    buf[n++] = blockBits[pos];
+                }
+            }
+            used[c] = new int[n];
+            System.arraycopy(buf, 0, used[c], 0, n);
+        }
+
+        int maskWords = Math.max(1, (usedBits + 63) >>> 6);
+        long[] bits = new long[total * maskWords];
+        for (int c = 0; c < total; c++) {
+            int off = c * maskWords;
+            for (int bit : used[c]) bits[off + (bit >>> 6)] |= 1L << bit;
+        }
+
+        words = Math.max(1, (total + 63) >>> 6);
+        conflicts = new long[total * words];
+        for (int a = 0; a < total; a++) {
+            int aoff = a * maskWords;
+            for (int b = a + 1; b < total; b++) {
+                int boff = b * maskWords;
+                for (int i = 0; i < maskWords; i++) {
+                    if ((bits[aoff + i] & bits[boff + i]) != 0) {
+                        conflicts[a * words + (b >>> 6)] |= 1L << b;
+                        conflicts[b * words + (a >>> 6)] |= 1L << a;
+                        break;
+                    }
+                }
+            }
+        }
+
+        degree = new int[requiredLevels];
+        for (int level = 0; level < requiredLevels; level++) {
+            for (int c = levelStart[level]; c < levelStart[level + 1]; c++) {
+                degree[level] += countBits(conflicts, c * words, 0,
+                        levelStart[level])
+                        + countBits(conflicts, c * words,
+                        levelStart[level + 1], levelStart[requiredLevels]);
+            }
+        }
+    }
+
+    private static UniqueSection[] getLevel(UniqueSection[][] required,
+            UniqueSection[][] extra, int level) {
+        return level < required.length ? required[level]
+                : extra[level - required.length];
+    }
+
+    int getRequiredLevelCount() { return requiredLevels; }
+
+    int getLevelCount() { return levelCount; }
+
+    /**
+     * Returns the number of candidate sections in the given level.
+     */
+    int getLevelSize(int level) {
+        return levelStart[level + 1] - levelStart[level];
+    }
+
+    /**
+     * Returns the index of the given candidate of the given level.
+     */
+    int getCandidate(int level, int index) {
+        return levelStart[level] + index;
+    }
+
+    /**
+     * Creates a schedule of the given candidates. Levels whose candidate is
+     * {@code -1} are left out.
+     * @param chosen the index of the candidate chosen at each level, or
+     *        {@code -1}
+     * @param length the number of levels in {@code chosen} to use
+     * @return a new schedule, or {@code null} if no candidates were chosen
+     */
+    ScheduleNode createSchedule(int[] chosen, int length) {
+        ScheduleNode node = null;
+        for (int i = 0; i < length; i++) {
+            int c = chosen[i];
+            if (c != -1) node = new ScheduleNode(plugin, node, candidates[c]);
+        }
+        return node;
+    }
+
+    /**
+     * Returns the set of candidates which are among the given sections, for
+     * use with {@link #newRequiredSearch(Pruner, long[])} and {@link
+     * #newExtraSearch(Pruner, long[])}.
+     */
+    long[] getCandidateSet(Set<UniqueSection> sections) {
+        long[] set = new long[words];
+        for (int c = 0; c < candidates.length; c++) {
+            if (sections.contains(candidates[c])) set[c >>> 6] |= 1L << c;
+        }
+        return set;
+    }
+
+    /**
+     * Returns the set of candidates whose classes are all at times which are
+     * on in the given mask, for use with {@link #newRequiredSearchWithin} and
+     * {@link #newExtraSearchWithin}.
+     */
+    long[] getCandidatesWithin(WeekMask<?> mask) {
+        long[] set = new long[words];
+        Outer: for (int c = 0; c < candidates.length; c++) {
+            WeekMask<?> time = candidates[c].getTimeMask();
+            for (int day = 0; day < 7; day++) {
+                DayMask dayMask = time.getDayMask(day);
+                DayMask within = mask.getDayMask(day);
+                for (int block = dayMask.nextSetBlock(0); block != -1;
+                        block = dayMask.nextSetBlock(block + 1)) {
+                    if (!within.isOn(block)) continue Outer;
+                }
+            }
+            set[c >>> 6] |= 1L << c;
+        }
+        return set;
+    }
+
+    /**
+     * Returns a search for schedules of only the required courses.
+     */
+    Search newRequiredSearch(Pruner pruner) {
+        return newRequiredSearch(pruner, null);
+    }
+
+    /**
+     * Returns a search for schedules of only the required courses which hold
+     * at least one of the given candidates.
+     * @param include a set of candidates from {@link #getCandidateSet}, or
+     *        {@code null} to return every schedule
+     */
+    Search newRequiredSearch(Pruner pruner, long[] include) {
+        return new Search(requiredLevels, requiredLevels, null, 0, pruner,
+                include, null);
+    }
+
+    /**
+     * Returns a search for schedules with at least one extra course. If there
+     * are required courses, each schedule also holds one of their
+     * combinations, and schedules come in the order of those combinations.
+     */
+    Search newExtraSearch(Pruner pruner) {
+        return newExtraSearch(pruner, null);
+    }
+
+    /**
+     * Returns a search for schedules with at least one extra course which
+     * hold at least one of the given candidates.
+     * @param include a set of candidates from {@link #getCandidateSet}, or
+     *        {@code null} to return every schedule
+     */
+    Search newExtraSearch(Pruner pruner, long[] include) {
+        return new Search(levelCount, requiredLevels, null, 0, pruner, include,
+                null);
+    }
+
+    /**
+     * Returns a search for schedules of only the required courses made only
+     * of the given candidates.
+     * @param within a set of candidates from {@link #getCandidatesWithin}
+     */
+    Search newRequiredSearchWithin(long[] within) {
+        return new Search(requiredLevels, requiredLevels, null, 0, null, null,
+                within);
+    }
+
+    /**
+     * Returns a search for schedules with at least one extra course made only
+     * of the given candidates.
+     * @param within a set of candidates from {@link #getCandidatesWithin}
+     */
+    Search newExtraSearchWithin(long[] within) {
+        return new Search(levelCount, requiredLevels, null, 0, null, null,
+                within);
+    }
+
+    /**
+     * Returns a search over only the first {@code levels} levels, beginning
+     * with the given choices. The levels before {@code optionalFrom} are
+     * required. If every level is required, each complete combination is
+     * returned; otherwise each combination with a section chosen at its
+     * deepest optional level is returned.
+     * @param levels the number of levels to search
+     * @param optionalFrom the first level which may be left out
+     * @param prefix the candidates already chosen at the first levels, or
+     *        {@code -1} for a level left out; these must not conflict
+     * @param prefixLength the number of levels already chosen, which must
+     *        be less than {@code levels}
+     * @param pruner a pruner which decides which partial schedules are not
+     *        worth searching further, or {@code null} to search everything
+     */
+    Search newSearch(int levels, int optionalFrom, int[] prefix,
+            int prefixLength, Pruner pruner) {
+        return new Search(levels, optionalFrom, prefix, prefixLength, pruner,
+                null, null);
+    }
+
+    /**
+     * Returns the number of schedules a {@link ScheduleCursor} on this kernel
+     * would return, without creating any of them. Parts of the search which
+     * are reached again with the same courses left to choose and the same
+     * sections still available are only counted once.
+     * @return the number of possible schedules
+     */
+    long countSchedules() {
+        long[] domain = new long[words];
+        Arrays.fill(domain, -1L);
+        Map<CountState, Long> memo = new HashMap<CountState, Long>();
+        long count = countSchedules(0, domain, memo);
+
+        // with no required courses the empty schedule was counted too
+        if (requiredLevels == 0 && count > 0) count--;
+        return count;
+    }
+
+    /**
+     * Returns the number of ways to choose sections of the courses at or
+     * after the given level from the given candidates, leaving out only extra
+     * courses.
+     */
+    private long countSchedules(int level, long[] domain,
+            Map<CountState, Long> memo) {
+        if (level == levelCount) return 1;
+
+        for (int l = level; l < requiredLevels; l++) {
+            int end = levelStart[l + 1];
+            if (nextSetBit(domain, 0, levelStart[l], end) == end) return 0;
+        }
+
+        CountState state = new CountState(level, domain);
+        Long known = memo.get(state);
+        if (known != null) return known;
+
+        int end = levelStart[level + 1];
+        int from = end >>> 6;
+        long[] next = new long[words];
+        long count = 0;
+        for (int c = nextSetBit(domain, 0, levelStart[level], end); c < end;
+                c = nextSetBit(domain, 0, c + 1, end)) {
+            int off = c * words;
+            for (int i = from; i < words; i++) {
+                next[i] = domain[i] & ~conflicts[off + i];
+            }
+            count += countSchedules(level + 1, next, memo);
+        }
+        if (level >= requiredLevels) {
+            count += countSchedules(level + 1, domain, memo);
+        }
+
+        if (memo.size() < MAX_COUNT_MEMO) memo.put(state, count);
+        return count;
+    }
+
+    /**
+     * A point in the search, identified by the level and the candidates of
+     * that level and the levels after it which are still available.
+     */
+    private final class CountState {
+        private final int level;
+        private final long[] available;
+        private final int hash;
+
+        CountState(int level, long[] domain) {
+            this.level = level;
+
+            int start = levelStart[level];
+            int from = start >>> 6;
+            available = new long[words - from];
+            System.arraycopy(domain, from, available, 0, available.length);
+            available[0] &= -1L << start;
+            hash = 31 * level + Arrays.hashCode(available);
+        }
+
+        public boolean equals(Object o) {
+            if (!(o instanceof CountState)) return false;
+
+            CountState other = (CountState) o;
+            return level == other.level
+                    && Arrays.equals(available, other.available);
+        }
+
+        public int hashCode() { return hash; }
+    }
+
+    /**
+     * Returns the index of the first candidate in the given set, at or after
+     * {@code from} and before {@code to}, or {@code to} if there is none.
+     */
+    private static int nextSetBit(long[] set, int off, int from, int to) {
+        if (from >= to) return to;
+
+        int w = from >>> 6;
+        long word = set[off + w] & (-1L << from);
+        while (true) {
+            if (word != 0) {
+                int bit = (w << 6) + Long.numberOfTrailingZeros(word);
+                return bit < to ? bit : to;
+            }
+            w++;
+            if (w << 6 >= to) return to;
+            word = set[off + w];
+        }
+    }
+
+    /**
+     * Returns whether the two given sets share any candidate at or after
+     * {@code from} and before {@code to}.
+     */
+    private static boolean intersects(long[] a, int off, long[] b, int from,
+            int to) {
+        if (from >= to) return false;
+
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        for (int w = first; w <= last; w++) {
+            long word = a[off + w] & b[w];
+            if (w == first) word &= -1L << from;
+            if (w == last) word &= -1L >>> -to;
+            if (word != 0) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the number of candidates in the given set at or after
+     * {@code from} and before {@code to}.
+     */
+    private static int countBits(long[] set, int off, int from, int to) {
+        if (from >= to) return 0;
+
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        int count = 0;
+        for (int w = first; w <= last; w++) {
+            long word = set[off + w];
+            if (w == first) word &= -1L << from;
+            if (w == last) word &= -1L >>> -to;
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Returns the level of the given candidate.
+     */
+    private int getLevelOf(int candidate) {
+        int level = 0;
+        while (levelStart[level + 1] <= candidate) level++;
+        return level;
+    }
+
+    /**
+     * A single depth-first walk over the kernel. The required levels are not
+     * searched in a fixed order: after each choice, the search goes on with
+     * the required level with the fewest candidates still compatible with
+     * the choices so far, breaking ties by the level's {@linkplain #degree
+     * degree}. This finds the choices which leave no room for some course
+     * as early as possible. The extra levels follow in order.
+     * <br><br>
+     * Each call to {@link #next} resumes where the last one left off. A
+     * search is not thread-safe.
+     */
+    final class Search {
+        /** The number of levels searched. */
+        private final int levels;
+        /** The first step at which the level may be left out. */
+        private final int optionalFrom;
+        private final Pruner pruner;
+        /** The number of steps taken before the search began. */
+        private final int prefixLength;
+
+        /** The current step. */
+        private int depth;
+        /** The level searched at each step. */
+        private final int[] order;
+        /** The next candidate to try at each step. */
+        private final int[] next;
+        /** The candidate chosen at each step above the current one. */
+        private final int[] chosen;
+        /**
+         * The candidates compatible with the choices before each step,
+         * {@code words} per step.
+         */
+        private final long[] domains;
+        /**
+         * The schedule of the choices before each step, created as needed so
+         * the schedules found share the nodes for their common choices.
+         */
+        private final ScheduleNode[] nodes;
+        /** The number of steps for which {@link #nodes} is up to date. */
+        private int nodesValid = 0;
+        /** The candidates at least one of which must be in each result. */
+        private final long[] include;
+        /**
+         * Whether one of the {@linkplain #include included} candidates is
+         * chosen before each step.
+         */
+        private final boolean[] included;
+        /** Scratch space marking the levels chosen so far. */
+        private final boolean[] assigned;
+        /** The number of steps in the current result. */
+        private int length = 0;
+
+        private GenerationControl control = null;
+        /** The number of steps taken since the control was last told. */
+        private int steps = 0;
+
+        private Search(int levels, int optionalFrom, int[] prefix,
+                int prefixLength, Pruner pruner, long[] include,
+                long[] within) {
+            this.levels = levels;
+            this.optionalFrom = optionalFrom;
+            this.pruner = pruner;
+            this.prefixLength = prefixLength;
+            this.include = include;
+
+            order = new int[levels];
+            next = new int[levels];
+            chosen = new int[levels];
+            domains = new long[(levels + 1) * words];
+            nodes = new ScheduleNode[levels + 1];
+            assigned = new boolean[requiredLevels];
+
+            included = include == null ? null : new boolean[levels + 1];
+
+            if (within == null) {
+                Arrays.fill(domains, 0, words, -1L);
+            } else {
+                System.arraycopy(within, 0, domains, 0, words);
+            }
+            for (int step = 0; step < prefixLength; step++) {
+                int c = prefix[step];
+                order[step] = c == -1 ? step : getLevelOf(c);
+                chosen[step] = c;
+                if (included != null) {
+                    included[step + 1] = included[step]
+                            || (c != -1 && isIncluded(c));
+                }
+                int from = step * words;
+                int to = from + words;
+                if (c == -1) {
+                    System.arraycopy(domains, from, domains, to, words);
+                } else {
+                    int off = c * words;
+                    for (int i = 0; i < words; i++) {
+                        domains[to + i] = domains[from + i] & ~conflicts[off + i];
+                    }
+                }
+            }
+            if (levels == 0 || !chooseLevel(prefixLength)) {
+                depth = -1;
+            } else {
+                depth = prefixLength;
+                next[depth] = levelStart[order[depth]];
+            }
+        }
+
+        /**
+         * Finds the next schedule in the search.
+         * @return whether a schedule was found; if so, it can be read with
+         *         {@link #getChosen} and {@link #getLength}
+         */
+        boolean next() {
+            int[] order = this.order;
+            int[] next = this.next;
+            int[] chosen = this.chosen;
+            long[] domains = this.domains;
+            long[] conflicts = SearchKernel.this.conflicts;
+            int words = SearchKernel.this.words;
+            int levels = this.levels;
+
+            while (depth >= prefixLength) {
+                if (control != null && ++steps == STEPS_PER_CHECK) {
+                    steps = 0;
+                    if (!control.explored(STEPS_PER_CHECK)) {
+                        // give up on the rest of the search
+                        depth = -1;
+                        break;
+                    }
+                }
+
+                int step = depth;
+                int level = order[step];
+                int end = levelStart[level + 1];
+                int doff = step * words;
+                boolean optional = step >= optionalFrom;
+                boolean last = step + 1 == levels;
+
+                int c = next[step];
+                if (c < end) {
+                    c = nextSetBit(domains, doff, c, end);
+                    next[step] = c;
+                }
+
+                if (c < end) {
+                    next[step] = c + 1;
+                    chosen[step] = c;
+                    if (nodesValid > step) nodesValid = step;
+                    boolean inc = include == null || included[step]
+                            || isIncluded(c);
+                    if (!last) {
+                        int noff = doff + words;
+                        int off = c * words;
+                        for (int i = 0; i < words; i++) {
+                            domains[noff + i] = domains[doff + i]
+                                    & ~conflicts[off + i];
+                        }
+                        if (!chooseLevel(step + 1)) continue;
+                        if (!inc && !canInclude(step + 1)) continue;
+
+                        if (pruner != null) {
+                            ScheduleNode partial = new ScheduleNode(plugin,
+                                    getNode(step), candidates[c]);
+                            if (pruner.canPrune(partial)) continue;
+                            nodes[step + 1] = partial;
+                            nodesValid = step + 1;
+                        }
+                        depth++;
+                        next[depth] = levelStart[order[depth]];
+                        if (included != null) included[depth] = inc;
+                    }
+                    if (inc && (last || optional)) {
+                        length = step + 1;
+                        return true;
+                    }
+
+                } else if (optional && c == end) {
+                    // try leaving this course out
+                    next[step] = c + 1;
+                    chosen[step] = -1;
+                    if (nodesValid > step) nodesValid = step;
+                    if (!last) {
+                        System.arraycopy(domains, doff, domains, doff + words,
+                                words);
+                        chooseLevel(step + 1);
+                        boolean inc = include == null || included[step];
+                        if (!inc && !canInclude(step + 1)) continue;
+
+                        depth++;
+                        next[depth] = levelStart[order[depth]];
+                        if (included != null) included[depth] = inc;
+                    }
+
+                } else {
+                    depth--;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Decides which level to search at the given step. While there are
+         * required levels left, this is the one with the fewest candidates
+         * compatible with the choices before the step.
+         * @return whether every required level left has a compatible
+         *         candidate
+         */
+        private boolean chooseLevel(int step) {
+            if (step >= requiredLevels) {
+                order[step] = step;
+                return true;
+            }
+
+            boolean[] assigned = this.assigned;
+            Arrays.fill(assigned, false);
+            for (int i = 0; i < step; i++) assigned[order[i]] = true;
+
+            int off = step * words;
+            int best = -1;
+            int bestCount = 0;
+            for (int level = 0; level < requiredLevels; level++) {
+                if (assigned[level]) continue;
+
+                int count = countBits(domains, off, levelStart[level],
+                        levelStart[level + 1]);
+                if (count == 0) return false;
+                if (best == -1 || count < bestCount || (count == bestCount
+                        && degree[level] > degree[best])) {
+                    best = level;
+                    bestCount = count;
+                }
+            }
+            order[step] = best;
+            return true;
+        }
+
+        /**
+         * Sets the control to report this search's steps to. The search
+         * ends early if the control says to stop.
+         */
+        void setControl(GenerationControl control) {
+            this.control = control;
+        }
+
+        /**
+         * Returns an estimate of how much of this search is done, from
+         * {@code 0} to {@code 1}, based on which candidates of the first
+         * steps are being searched.
+         */
+        double getFractionDone() {
+            if (depth < prefixLength) return 1;
+
+            double done = 0;
+            double scale = 1;
+            for (int step = prefixLength; step <= depth; step++) {
+                int start = levelStart[order[step]];
+                int size = levelStart[order[step] + 1] - start;
+                if (step >= optionalFrom) size++;
+                if (size == 0) break;
+
+                // the candidate at each step above is still being searched
+                int finished = next[step] - start;
+                if (step < depth) finished--;
+                done += scale * finished / size;
+                scale /= size;
+                if (scale < 1e-6) break;
+            }
+            return Math.min(done, 1);
+        }
+
+        private boolean isIncluded(int c) {
+            return (include[c >>> 6] & (1L << c)) != 0;
+        }
+
+        /**
+         * Returns whether any of the {@linkplain #include included}
+         * candidates of the levels not chosen before the given step are
+         * still compatible with the choices before it.
+         */
+        private boolean canInclude(int step) {
+            int off = step * words;
+            if (step < requiredLevels) {
+                boolean[] assigned = this.assigned;
+                Arrays.fill(assigned, false);
+                for (int i = 0; i < step; i++) assigned[order[i]] = true;
+
+                for (int level = 0; level < requiredLevels; level++) {
+                    if (!assigned[level] && intersects(domains, off, include,
+                            levelStart[level], levelStart[level + 1])) {
+                        return true;
+                    }
+                }
+            }
+            int from = Math.max(step, requiredLevels);
+            return from < levels && intersects(domains, off, include,
+                    levelStart[from], levelStart[levels]);
+        }
+
+        /**
+         * Returns the candidate chosen at each step of the last schedule
+         * found, or {@code -1} for levels left out. The returned array is
+         * reused by later calls to {@link #next}.
+         */
+        int[] getChosen() { return chosen; }
+
+        /**
+         * Returns the number of steps in the last schedule found.
+         */
+        int getLength() { return length; }
+
+        /**
+         * Creates the last schedule found.
+         */
+        Schedule createSchedule() {
+            return getNode(length);
+        }
+
+        /**
+         * Returns the schedule of the choices at the given number of steps,
+         * creating the nodes which are not up to date.
+         */
+        private ScheduleNode getNode(int length) {
+            for (int step = nodesValid; step < length; step++) {
+                int c = chosen[step];
+                nodes[step + 1] = c == -1 ? nodes[step]
+                        : new ScheduleNode(plugin, nodes[step], candidates[c]);
+            }
+            if (nodesValid < length) nodesValid = length;
+            return nodes[length];
+        }
+    }
+
+    /**
+     * Decides which parts of a search can be skipped.
+     */
+    interface Pruner {
+        /**
+         * Returns whether no schedule built on the given partial schedule,
+         * including the partial schedule itself, is of any use.
+         * @param partial a partial schedule
+         * @return whether the search below the given schedule can be skipped
+         */
+        boolean canPrune(Schedule partial);
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the best {@code k} of the schedules offered to it, in a bounded
+ * priority queue whose head is the worst schedule kept. Schedules which
+ * compare equal are ranked in the order they were offered, so the result
+ * is the same as the first {@code k} schedules of a stable sort of every
+ * schedule.
+ * <br><br>
+ * If the comparator is a {@link BoundedComparator}, this also serves as
+ * the search's pruner: once {@code k} schedules have been found, a partial
+ * schedule which can only follow the worst of them is not searched.
+ */
+final class TopSchedules implements SearchKernel.Pruner {
+    private final Comparator<? super Schedule> comparator;
+    private final BoundedComparator bound;
+    private final int k;
+    private final PriorityQueue<Ranked> queue;
+    private long offered = 0;
+
+    TopSchedules(Comparator<? super Schedule> comparator, int k) {
+        this.comparator = comparator;
+        this.bound = comparator instanceof BoundedComparator
+                ? (BoundedComparator) comparator : null;
+        this.k = k;
+        this.queue = new PriorityQueue<Ranked>(k + 1, new Comparator<Ranked>() {
+            public int compare(Ranked o1, Ranked o2) {
+                // worst first
+                int c = TopSchedules.this.comparator.compare(o2.schedule,
+                        o1.schedule);
+                if (c != 0) return c;
+                return o1.index > o2.index ? -1 : (o1.index == o2.index ? 0 : 1);
+            }
+        });
+    }
+
+    void offer(Schedule schedule) {
+        long index = offered++;
+        if (queue.size() < k) {
+            queue.add(new Ranked(schedule, index));
+
+        } else if (comparator.compare(schedule, queue.peek().schedule) < 0) {
+            queue.poll();
+            queue.add(new Ranked(schedule, index));
+        }
+    }
+
+    public boolean canPrune(Schedule partial) {
+        return bound != null && queue.size() == k
+                && bound.canOnlyFollow(partial, queue.peek().schedule);
+    }
+
+    /**
+     * Returns the schedules kept, best first.
+     * @return the best schedules offered, in sorted order
+     */
+    List<Schedule> getSchedules() {
+        List<Ranked> ranked = new ArrayList<Ranked>(queue);
+        Collections.sort(ranked, Collections.reverseOrder(queue.comparator()));
+
+        List<Schedule> schedules = new ArrayList<Schedule>(ranked.size());
+        for (Ranked r : ranked) schedules.add(r.schedule);
+        return schedules;
+    }
+
+    private static final class Ranked {
+        private final Schedule schedule;
+        private final long index;
+
+        Ranked(Schedule schedule, long index) {
+            this.schedule = schedule;
+            this.index = index;
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.engine;
+
+import edu.rpi.scheduler.DefensiveTools;
+import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.spec.Schedule;
+
+import java.util.List;
+
+/**
+ * Ranks schedules by a weighted sum of {@linkplain ScheduleMetric metrics},
+ * lowest first. This lets several criteria, like days of class and time
+ * between classes, be combined into one ranking.
+ * <br><br>
+ * Each schedule's score is a single number, so sorting by a weighted score
+ * computes every score once; see {@link KeyedComparator}. The metrics'
+ * lower bounds also give a lower bound for the score of any schedule built
+ * on a partial schedule, so {@link SchedulerEngine#generateTopSchedules}
+ * skips partial schedules which cannot score better than the best
+ * schedules found so far.
+ */
+public final class WeightedScore implements BoundedComparator, KeyedComparator {
+    private final ScheduleMetric[] metrics;
+    private final int[] weights;
+
+    /**
+     * Creates a score which weights each of the given metrics by the
+     * corresponding weight.
+     * @param metrics the metrics to combine
+     * @param weights the weight of each metric, none of which may be
+     *        negative
+     */
+    public WeightedScore(List<? extends ScheduleMetric> metrics, int[] weights) {
+        DefensiveTools.checkNull(metrics, "metrics");
+        DefensiveTools.checkNull(weights, "weights");
+        if (metrics.size() != weights.length) {
+            throw new IllegalArgumentException("there are " + metrics.size()
+                    + " metrics but " + weights.length + " weights");
+        }
+
+        this.metrics = metrics.toArray(new ScheduleMetric[metrics.size()]);
+        this.weights = weights.clone();
+        for (int i = 0; i < this.metrics.length; i++) {
+            DefensiveTools.checkNull(this.metrics[i], "metrics[" + i + "]");
+            DefensiveTools.checkRange(this.weights[i], "weights[" + i + "]", 0);
+        }
+    }
+
+    /**
+     * Returns the given schedule's score. Lower scores are better.
+     * @param schedule a schedule
+     * @return the schedule's score
+     */
+    public long getScore(Schedule schedule) {
+        WeekMask<?> mask = schedule.getClassMask();
+        long score = 0;
+        for (int i = 0; i < metrics.length; i++) {
+            if (weights[i] != 0) {
+                score += (long) weights[i] * metrics[i].getValue(mask);
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Returns a score no greater than that of any schedule built on the
+     * given partial schedule.
+     */
+    private long getLowerBound(Schedule partial) {
+        WeekMask<?> mask = partial.getClassMask();
+        long score = 0;
+        for (int i = 0; i < metrics.length; i++) {
+            if (weights[i] != 0) {
+                score += (long) weights[i] * metrics[i].getLowerBound(mask);
+            }
+        }
+        return score;
+    }
+
+    public int compare(Schedule o1, Schedule o2) {
+        long s1 = getScore(o1);
+        long s2 = getScore(o2);
+        return s1 < s2 ? -1 : (s1 == s2 ? 0 : 1);
+    }
+
+    public boolean canOnlyFollow(Schedule partial, Schedule schedule) {
+        return getLowerBound(partial) >= getScore(schedule);
+    }
+
+    public int getKeyLength() { return 1; }
+
+    public void getKey(Schedule schedule, long[] key, int off) {
+        key[off] = getScore(schedule);
+    }
+}
@@ -41,8 +41,16 @@ public final class BitSetDayMask implements DayMask {
     public static final int MAX_BLOCK_NUM = 1440;
 
     private BitSet mask = new BitSet(MAX_BLOCK_NUM);
+    private final boolean frozen;
 
-    public BitSetDayMask() { }
+    public BitSetDayMask() {
+        this.frozen = false;
+    }
+
+    private BitSetDayMask(BitSetDayMask other, boolean frozen) {
+        this.mask.or(other.mask);
+        this.frozen = frozen;
+    }
 
     public BitSetDayMask(BitSet mask) {
         if (mask.length() != MAX_BLOCK_NUM) {
@@ -52,6 +60,7 @@ public final class BitSetDayMask implements DayMask {
         }
         this.mask.clear();
         this.mask.or(mask);
+        this.frozen = false;
     }
 
     public boolean isOn(int block) {
@@ -63,24 +72,34 @@ public final class BitSetDayMask implements DayMask {
     }
 
     public boolean add(int block) {
+        checkChangeable();
         boolean wasOn = mask.get(block);
         mask.set(block);
         return wasOn;
     }
 
     public boolean delete(int block) {
+        checkChangeable();
         boolean wasOn = mask.get(block);
         mask.clear(block);
         return wasOn;
     }
 
+    public void addRange(int from, int to) {
+        checkChangeable();
+        if (from >= to) return;
+        mask.set(from, to);
+    }
+
     public boolean fill() {
-        if (mask.cardinality() == mask.length()) return false;
-        mask.set(0, mask.length() - 1, true);
+        checkChangeable();
+        if (mask.cardinality() == MAX_BLOCK_NUM + 1) return false;
+        mask.set(0, MAX_BLOCK_NUM + 1);
         return true;
     }
 
     public boolean clear() {
+        checkChangeable();
         if (mask.cardinality() == 0) return false;
         mask.clear();
         return true;
@@ -97,6 +116,7 @@ public final class BitSetDayMask implements DayMask {
     }
 
     public void merge(DayMask other) {
+        checkChangeable();
         if (other instanceof BitSetDayMask) {
             BitSetDayMask rdm = (BitSetDayMask) other;
             mask.or(rdm.mask);
@@ -112,6 +132,25 @@ public final class BitSetDayMask implements DayMask {
         return mask.cardinality();
     }
 
+    public int nextSetBlock(int from) {
+        return mask.nextSetBit(Math.max(from, 0));
+    }
+
+    public int nextClearBlock(int from) {
+        return mask.nextClearBit(Math.max(from, 0));
+    }
+
+    public BitSetDayMask copy(boolean frozen) {
+        return new BitSetDayMask(this, frozen);
+    }
+
+    private void checkChangeable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("frozen day masks "
+                    + "cannot be changed");
+        }
+    }
+
     public boolean equals(Object obj) {
         if (!(obj instanceof BitSetDayMask)) return false;
         BitSetDayMask rdm = (BitSetDayMask) obj;
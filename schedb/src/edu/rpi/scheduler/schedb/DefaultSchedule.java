@@ -86,7 +86,11 @@ public class DefaultSchedule implements Schedule {
         return mask.fitsInto(this.mask);
     }
 
-    public WeekMask<?> getTimeMask() { return mask; }
+    /**
+     * Returns a frozen copy of this schedule's time mask. A new copy is made
+     * only after a section is added.
+     */
+    public WeekMask<?> getTimeMask() { return getClassMask(); }
 
     public List<UniqueSection> getSections() {
         return sections;
@@ -108,55 +112,60 @@ public class DefaultSchedule implements Schedule {
                 mask.merge(section.getTimeMask());
             }
 
-            classMask = mask;
+            classMask = mask.freeze();
         }
 
         return classMask;
     }
 
     public int getDaysOfClass() {
-        if (daysOff == -1) {
-            int days = 0;
-            WeekMask<?> mask = getClassMask();
-
-            for (int i = 0; i < 7; i++) {
-                if (!mask.getDayMask(i).isEmpty()) days++;
-            }
-
-            daysOff = days;
-        }
+        if (daysOff == -1) daysOff = getDaysOfClass(getClassMask());
 
         return daysOff;
     }
 
     public int[] getTimeSums() {
-        if (times == null) {
-            int[] halves = new int[7];
-            WeekMask<?> mask = getClassMask();
+        if (times == null) times = getTimeSums(getClassMask());
 
-            for (int i = 0; i < 7; i++) {
-                DayMask day = mask.getDayMask(i);
+        return times;
+    }
 
-                int time = day.getTimeBlockSum();
+    public List<List<TimePeriod>> getBetweens() {
+        return getBetweens(sections);
+    }
 
-                halves[i] = time;
-            }
+    static int getDaysOfClass(WeekMask<?> mask) {
+        int days = 0;
+        for (int i = 0; i < 7; i++) {
+            if (!mask.getDayMask(i).isEmpty()) days++;
+        }
+        return days;
+    }
 
-            Arrays.sort(halves);
-            // reverse the sorting
-            for (int i = 0; i < halves.length/2; i++) {
-                int j = halves.length-i-1;
-                int temp = halves[i];
-                halves[i] = halves[j];
-                halves[j] = temp;
-            }
-            times = halves;
+    static int[] getTimeSums(WeekMask<?> mask) {
+        int[] halves = new int[7];
+
+        for (int i = 0; i < 7; i++) {
+            DayMask day = mask.getDayMask(i);
+
+            int time = day.getTimeBlockSum();
+
+            halves[i] = time;
         }
 
-        return times;
+        Arrays.sort(halves);
+        // reverse the sorting
+        for (int i = 0; i < halves.length/2; i++) {
+            int j = halves.length-i-1;
+            int temp = halves[i];
+            halves[i] = halves[j];
+            halves[j] = temp;
+        }
+        return halves;
     }
 
-    public List<List<TimePeriod>> getBetweens() {
+    static List<List<TimePeriod>> getBetweens(
+            Collection<UniqueSection> sections) {
         List<List<TimePeriod>> periodsByDay = new ArrayList<List<TimePeriod>>(7);
         for (int i = 0; i < 7; i++) {
             periodsByDay.add(new ArrayList<TimePeriod>());
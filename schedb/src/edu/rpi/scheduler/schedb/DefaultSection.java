@@ -50,7 +50,7 @@ public class DefaultSection implements Section {
     private final Collection<ClassPeriod> periods;
     private final Notes notes;
     private final int seats;
-    private WeekMask<?> weekMask = null;
+    private volatile WeekMask<?> weekMask = null;
 
     public DefaultSection(SchedulerDataPlugin plugin, SectionNumber number, SectionID secid,
             int seats, Collection<ClassPeriod> periods, Notes notes) {
@@ -71,15 +71,21 @@ public class DefaultSection implements Section {
     public Collection<ClassPeriod> getPeriods() { return periods; }
 
     /**
-     * NOTE: returned object is mutable
+     * Returns the times of this section's classes. The mask is {@linkplain
+     * WeekMaskPool interned}, so sections with the same class times share it
+     * and it cannot be changed. If two threads build it at once, both get
+     * the same mask from the pool.
      */
     public WeekMask<?> getWeekMask() {
+        WeekMask<?> weekMask = this.weekMask;
         if (weekMask == null) {
             TimeRepresentation timeRep = plugin.getTimeRepresentation();
-            weekMask = timeRep.newWeekMask();
+            WeekMask<?> mask = timeRep.newWeekMask();
             for (ClassPeriod period : periods) {
-                weekMask.merge(timeRep.getWeekMask(period.getTimePeriod()));
+                mask.merge(timeRep.getWeekMask(period.getTimePeriod()));
             }
+            weekMask = timeRep.getMaskPool().intern(mask);
+            this.weekMask = weekMask;
         }
 
         return weekMask;
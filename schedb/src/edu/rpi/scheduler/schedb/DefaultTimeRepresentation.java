@@ -39,19 +39,52 @@ import edu.rpi.scheduler.schedb.spec.DayMask;
 import edu.rpi.scheduler.schedb.spec.TimeRepresentation;
 import static java.lang.Math.abs;
 
+/**
+ * Divides each day into blocks of a fixed number of minutes, five by
+ * default. Week masks are {@linkplain WeekMask#newFlatMask flat}, with as
+ * few words per day as the blocks fit in: a single word for blocks of
+ * thirty minutes or more.
+ */
 public class DefaultTimeRepresentation implements TimeRepresentation {
-    private static final int MINS_PER_BLOCK = 5;
-    private static final int LAST_BLOCK = ((24*60)/MINS_PER_BLOCK)-1;
+    public static final int DEFAULT_MINUTES_PER_BLOCK = 5;
+
+    private final int minsPerBlock;
+    private final int lastBlock;
+    private final WeekMaskPool maskPool = new WeekMaskPool();
+
+    public DefaultTimeRepresentation() {
+        this(DEFAULT_MINUTES_PER_BLOCK);
+    }
+
+    /**
+     * Creates a time representation with blocks of the given length.
+     * @param minutesPerBlock the number of minutes in each block
+     */
+    public DefaultTimeRepresentation(int minutesPerBlock) {
+        DefensiveTools.checkRange(minutesPerBlock, "minutesPerBlock", 1,
+                24*60);
 
-    public WeekMask<BitSetDayMask> newWeekMask() {
-        return WeekMask.newMask(BitSetDayMask.class);
+        this.minsPerBlock = minutesPerBlock;
+        this.lastBlock = ((24*60)/minutesPerBlock)-1;
+    }
+
+    /**
+     * Returns the number of minutes in each block.
+     * @return the length of a block, in minutes
+     */
+    public int getMinutesPerBlock() { return minsPerBlock; }
+
+    public WeekMaskPool getMaskPool() { return maskPool; }
+
+    public WeekMask<FlatDayMask> newWeekMask() {
+        return WeekMask.newFlatMask(lastBlock + 1);
     }
 
     protected int getBlockFromMins(int mins) {
-        return getNormalizedBlock(mins / MINS_PER_BLOCK);
+        return getNormalizedBlock(mins / minsPerBlock);
     }
 
-    private static int getNormalizedBlock(int block) {
+    private int getNormalizedBlock(int block) {
         if (block < 0) {
             block = 0;
         } else {
@@ -61,10 +94,10 @@ public class DefaultTimeRepresentation implements TimeRepresentation {
         return block;
     }
 
-    private static int getMaxBlockNumber() { return LAST_BLOCK; }
+    private int getMaxBlockNumber() { return lastBlock; }
 
     protected int getMinsFromBlock(int block) {
-        return getNormalizedBlock(block) * MINS_PER_BLOCK;
+        return getNormalizedBlock(block) * minsPerBlock;
     }
 
     public Time getTime(int block) {
@@ -122,12 +155,8 @@ public class DefaultTimeRepresentation implements TimeRepresentation {
 
         boolean[] days = time.getDays();
         for (int i = 0; i < 7; i++) {
-            if (days[i]) addBits(mask.getDayMask(i), first, last);
+            if (days[i]) mask.addRange(i, first, last + 1);
         }
         return mask;
     }
-
-    private static void addBits(DayMask mask, int first, int last) {
-        for (int i = first; i <= last; i++) mask.add(i);
-    }
 }
@@ -0,0 +1,218 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.schedb;
+
+import edu.rpi.scheduler.schedb.spec.DayMask;
+
+/**
+ * One day of a {@linkplain WeekMask#newFlatMask flat week mask}. The blocks
+ * are stored in a slice of the week mask's array, a whole number of words
+ * long, so a week mask can check or merge all seven days in one loop.
+ */
+public final class FlatDayMask implements DayMask {
+    private final long[] words;
+    private final int off;
+    private final int length;
+    private final boolean frozen;
+
+    FlatDayMask(long[] words, int off, int length, boolean frozen) {
+        this.words = words;
+        this.off = off;
+        this.length = length;
+        this.frozen = frozen;
+    }
+
+    public boolean isOn(int block) {
+        return block >= 0 && block < length << 6
+                && (words[off + (block >>> 6)] & 1L << block) != 0;
+    }
+
+    public boolean isEmpty() {
+        for (int i = off; i < off + length; i++) {
+            if (words[i] != 0) return false;
+        }
+        return true;
+    }
+
+    public boolean add(int block) {
+        return setWord(block >>> 6, words[off + (block >>> 6)] | 1L << block);
+    }
+
+    public boolean delete(int block) {
+        return setWord(block >>> 6,
+                words[off + (block >>> 6)] & ~(1L << block));
+    }
+
+    private boolean setWord(int word, long newword) {
+        checkChangeable();
+        long old = words[off + word];
+        words[off + word] = newword;
+        return newword != old;
+    }
+
+    public void addRange(int from, int to) {
+        checkChangeable();
+        if (from >= to) return;
+
+        int first = from >>> 6;
+        int last = (to - 1) >>> 6;
+        if (first == last) {
+            words[off + first] |= (-1L << from) & (-1L >>> -to);
+        } else {
+            words[off + first] |= -1L << from;
+            for (int i = first + 1; i < last; i++) words[off + i] = -1L;
+            words[off + last] |= -1L >>> -to;
+        }
+    }
+
+    public boolean fill() {
+        checkChangeable();
+        boolean changed = false;
+        for (int i = off; i < off + length; i++) {
+            if (words[i] != -1L) {
+                words[i] = -1L;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean clear() {
+        checkChangeable();
+        boolean changed = false;
+        for (int i = off; i < off + length; i++) {
+            if (words[i] != 0) {
+                words[i] = 0;
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    public boolean fitsInto(DayMask other) {
+        FlatDayMask fdm = getSameSize(other);
+        for (int i = 0; i < length; i++) {
+            if ((words[off + i] & fdm.words[fdm.off + i]) != 0) return false;
+        }
+        return true;
+    }
+
+    public void merge(DayMask other) {
+        checkChangeable();
+        FlatDayMask fdm = getSameSize(other);
+        for (int i = 0; i < length; i++) {
+            words[off + i] |= fdm.words[fdm.off + i];
+        }
+    }
+
+    private FlatDayMask getSameSize(DayMask other) {
+        if (other instanceof FlatDayMask) {
+            FlatDayMask fdm = (FlatDayMask) other;
+            if (fdm.length == length) return fdm;
+        }
+        throw new IllegalArgumentException("Cannot compare flat day mask to "
+                + other.getClass().getName());
+    }
+
+    public int getMaxBlockNum() { return (length << 6) - 1; }
+
+    public int getTimeBlockSum() {
+        int time = 0;
+        for (int i = off; i < off + length; i++) time += Long.bitCount(words[i]);
+        return time;
+    }
+
+    public int nextSetBlock(int from) {
+        if (from < 0) from = 0;
+        int i = from >>> 6;
+        if (i >= length) return -1;
+
+        long word = words[off + i] & (-1L << from);
+        while (word == 0) {
+            if (++i == length) return -1;
+            word = words[off + i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    public int nextClearBlock(int from) {
+        if (from < 0) from = 0;
+        int i = from >>> 6;
+        if (i >= length) return from;
+
+        long word = ~words[off + i] & (-1L << from);
+        while (word == 0) {
+            if (++i == length) return length << 6;
+            word = ~words[off + i];
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    public FlatDayMask copy(boolean frozen) {
+        long[] copy = new long[length];
+        System.arraycopy(words, off, copy, 0, length);
+        return new FlatDayMask(copy, 0, length, frozen);
+    }
+
+    private void checkChangeable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("frozen day masks "
+                    + "cannot be changed");
+        }
+    }
+
+    public boolean equals(Object obj) {
+        if (!(obj instanceof FlatDayMask)) return false;
+        FlatDayMask fdm = (FlatDayMask) obj;
+        if (fdm.length != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (words[off + i] != fdm.words[fdm.off + i]) return false;
+        }
+        return true;
+    }
+
+    public int hashCode() {
+        return hashCode(words, off, length);
+    }
+
+    /**
+     * Returns the hash code of a flat day mask stored in the given slice of
+     * the given array.
+     */
+    static int hashCode(long[] words, int off, int length) {
+        long h = 1234;
+        for (int i = length; --i >= 0;) h ^= words[off + i] * (i + 1);
+        return (int) ((h >> 32) ^ h);
+    }
+}
@@ -37,11 +37,19 @@ import edu.rpi.scheduler.schedb.spec.DayMask;
 
 public final class IntDayMask implements DayMask {
     private int mask = 0;
+    private final boolean frozen;
 
-    public IntDayMask() { }
+    public IntDayMask() {
+        this.frozen = false;
+    }
 
     public IntDayMask(int mask) {
+        this(mask, false);
+    }
+
+    private IntDayMask(int mask, boolean frozen) {
         this.mask = mask;
+        this.frozen = frozen;
     }
 
     public boolean isOn(int block) {
@@ -57,6 +65,7 @@ public final class IntDayMask implements DayMask {
     }
 
     private boolean setMask(int newmask) {
+        checkChangeable();
         int old = this.mask;
         this.mask = newmask;
         return newmask != old;
@@ -66,6 +75,12 @@ public final class IntDayMask implements DayMask {
         return setMask(mask & ~(1 << block));
     }
 
+    public void addRange(int from, int to) {
+        checkChangeable();
+        if (from >= to) return;
+        mask |= (-1 << from) & (-1 >>> -to);
+    }
+
     public boolean fill() {
         return setMask(~0);
     }
@@ -88,7 +103,7 @@ public final class IntDayMask implements DayMask {
     public void merge(DayMask other) {
         if (other instanceof IntDayMask) {
             IntDayMask rdm = (IntDayMask) other;
-            mask |= rdm.mask;
+            setMask(mask | rdm.mask);
         } else {
             throw new IllegalArgumentException("Cannot compare int day mask to "
                     + other.getClass().getName());
@@ -108,6 +123,31 @@ public final class IntDayMask implements DayMask {
         return time;
     }
 
+    public int nextSetBlock(int from) {
+        if (from > 31) return -1;
+
+        int rest = mask & (-1 << Math.max(from, 0));
+        return rest == 0 ? -1 : Integer.numberOfTrailingZeros(rest);
+    }
+
+    public int nextClearBlock(int from) {
+        if (from > 31) return from;
+
+        int rest = ~mask & (-1 << Math.max(from, 0));
+        return rest == 0 ? 32 : Integer.numberOfTrailingZeros(rest);
+    }
+
+    public IntDayMask copy(boolean frozen) {
+        return new IntDayMask(mask, frozen);
+    }
+
+    private void checkChangeable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("frozen day masks "
+                    + "cannot be changed");
+        }
+    }
+
     public boolean equals(Object obj) {
         if (!(obj instanceof IntDayMask)) return false;
         IntDayMask rdm = (IntDayMask) obj;
@@ -39,11 +39,19 @@ public final class LongDayMask implements DayMask {
     public static final int MAX_BLOCK_NUM = 63;
 
     private long mask = 0;
+    private final boolean frozen;
 
-    public LongDayMask() { }
+    public LongDayMask() {
+        this.frozen = false;
+    }
 
     public LongDayMask(long mask) {
+        this(mask, false);
+    }
+
+    private LongDayMask(long mask, boolean frozen) {
         this.mask = mask;
+        this.frozen = frozen;
     }
 
     public boolean isOn(int block) {
@@ -59,6 +67,7 @@ public final class LongDayMask implements DayMask {
     }
 
     private boolean setMask(long newmask) {
+        checkChangeable();
         long old = this.mask;
         this.mask = newmask;
         return newmask != old;
@@ -68,6 +77,12 @@ public final class LongDayMask implements DayMask {
         return setMask(mask & ~(1L << block));
     }
 
+    public void addRange(int from, int to) {
+        checkChangeable();
+        if (from >= to) return;
+        mask |= (-1L << from) & (-1L >>> -to);
+    }
+
     public boolean fill() {
         return setMask(~(0L));
     }
@@ -90,7 +105,7 @@ public final class LongDayMask implements DayMask {
     public void merge(DayMask other) {
         if (other instanceof LongDayMask) {
             LongDayMask rdm = (LongDayMask) other;
-            mask |= rdm.mask;
+            setMask(mask | rdm.mask);
         } else {
             throw new IllegalArgumentException("Cannot compare int day mask to "
                     + other.getClass().getName());
@@ -113,6 +128,31 @@ public final class LongDayMask implements DayMask {
         */
     }
 
+    public int nextSetBlock(int from) {
+        if (from > MAX_BLOCK_NUM) return -1;
+
+        long rest = mask & (-1L << Math.max(from, 0));
+        return rest == 0 ? -1 : Long.numberOfTrailingZeros(rest);
+    }
+
+    public int nextClearBlock(int from) {
+        if (from > MAX_BLOCK_NUM) return from;
+
+        long rest = ~mask & (-1L << Math.max(from, 0));
+        return rest == 0 ? MAX_BLOCK_NUM + 1 : Long.numberOfTrailingZeros(rest);
+    }
+
+    public LongDayMask copy(boolean frozen) {
+        return new LongDayMask(mask, frozen);
+    }
+
+    private void checkChangeable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("frozen day masks "
+                    + "cannot be changed");
+        }
+    }
+
     public boolean equals(Object obj) {
         if (!(obj instanceof LongDayMask)) return false;
         LongDayMask rdm = (LongDayMask) obj;
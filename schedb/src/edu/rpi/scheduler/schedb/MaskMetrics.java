@@ -0,0 +1,191 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.schedb;
+
+import edu.rpi.scheduler.schedb.spec.DayMask;
+
+/**
+ * Measures the class times in a time mask directly from its blocks, by
+ * scanning the runs of blocks which are on. Nothing is allocated, so these
+ * can be used in comparators and during the search as well as for display.
+ * <br><br>
+ * Times are measured in blocks. A "run" is a stretch of consecutive blocks
+ * which are on, that is, a stretch of back-to-back classes, and a "gap" is
+ * the number of blocks which are off between two runs on the same day.
+ * Methods which find a block or a gap return {@code -1} if there is none.
+ */
+public final class MaskMetrics {
+    private MaskMetrics() { }
+
+    /**
+     * Returns the first block of the given day which is on.
+     */
+    public static int getFirstBlock(DayMask day) {
+        return day.nextSetBlock(0);
+    }
+
+    /**
+     * Returns the block just after the last block of the given day which is
+     * on, that is, the end of the last class.
+     */
+    public static int getEndBlock(DayMask day) {
+        int end = -1;
+        for (int start = day.nextSetBlock(0); start != -1;
+                start = day.nextSetBlock(end)) {
+            end = day.nextClearBlock(start);
+        }
+        return end;
+    }
+
+    /**
+     * Returns the number of runs of back-to-back classes on the given day.
+     */
+    public static int getRunCount(DayMask day) {
+        int runs = 0;
+        for (int start = day.nextSetBlock(0); start != -1;
+                start = day.nextSetBlock(day.nextClearBlock(start))) {
+            runs++;
+        }
+        return runs;
+    }
+
+    /**
+     * Returns the length of the shortest gap between classes on the given
+     * day.
+     */
+    public static int getSmallestGap(DayMask day) {
+        int smallest = -1;
+        int start = day.nextSetBlock(0);
+        while (start != -1) {
+            int end = day.nextClearBlock(start);
+            start = day.nextSetBlock(end);
+            if (start != -1 && (smallest == -1 || start - end < smallest)) {
+                smallest = start - end;
+            }
+        }
+        return smallest;
+    }
+
+    /**
+     * Returns the length of the longest gap between classes on the given day.
+     */
+    public static int getLargestGap(DayMask day) {
+        int largest = -1;
+        int start = day.nextSetBlock(0);
+        while (start != -1) {
+            int end = day.nextClearBlock(start);
+            start = day.nextSetBlock(end);
+            if (start != -1 && start - end > largest) largest = start - end;
+        }
+        return largest;
+    }
+
+    /**
+     * Returns the total length of the gaps between classes on the given day.
+     */
+    public static int getGapSum(DayMask day) {
+        int first = day.nextSetBlock(0);
+        if (first == -1) return 0;
+
+        return getEndBlock(day) - first - day.getTimeBlockSum();
+    }
+
+    /**
+     * Returns the earliest block of any day of the given week which is on.
+     */
+    public static int getEarliestStart(WeekMask<?> week) {
+        int earliest = -1;
+        for (int i = 0; i < 7; i++) {
+            int first = getFirstBlock(week.getDayMask(i));
+            if (first != -1 && (earliest == -1 || first < earliest)) {
+                earliest = first;
+            }
+        }
+        return earliest;
+    }
+
+    /**
+     * Returns the latest {@linkplain #getEndBlock end of the last class} of
+     * any day of the given week.
+     */
+    public static int getLatestEnd(WeekMask<?> week) {
+        int latest = -1;
+        for (int i = 0; i < 7; i++) {
+            latest = Math.max(latest, getEndBlock(week.getDayMask(i)));
+        }
+        return latest;
+    }
+
+    /**
+     * Returns the number of runs of back-to-back classes in the given week.
+     */
+    public static int getRunCount(WeekMask<?> week) {
+        int runs = 0;
+        for (int i = 0; i < 7; i++) runs += getRunCount(week.getDayMask(i));
+        return runs;
+    }
+
+    /**
+     * Returns the length of the shortest gap between classes on any day of
+     * the given week.
+     */
+    public static int getSmallestGap(WeekMask<?> week) {
+        int smallest = -1;
+        for (int i = 0; i < 7; i++) {
+            int gap = getSmallestGap(week.getDayMask(i));
+            if (gap != -1 && (smallest == -1 || gap < smallest)) smallest = gap;
+        }
+        return smallest;
+    }
+
+    /**
+     * Returns the length of the longest gap between classes on any day of the
+     * given week.
+     */
+    public static int getLargestGap(WeekMask<?> week) {
+        int largest = -1;
+        for (int i = 0; i < 7; i++) {
+            largest = Math.max(largest, getLargestGap(week.getDayMask(i)));
+        }
+        return largest;
+    }
+
+    /**
+     * Returns the total length of the gaps between classes in the given week.
+     */
+    public static int getGapSum(WeekMask<?> week) {
+        int sum = 0;
+        for (int i = 0; i < 7; i++) sum += getGapSum(week.getDayMask(i));
+        return sum;
+    }
+}
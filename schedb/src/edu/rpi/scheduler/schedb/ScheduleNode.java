@@ -0,0 +1,200 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+package edu.rpi.scheduler.schedb;
+
+import edu.rpi.scheduler.DefensiveTools;
+import edu.rpi.scheduler.schedb.spec.Schedule;
+import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+import edu.rpi.scheduler.schedb.spec.TimePeriod;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable schedule made of one section added to another schedule.
+ * Schedules which begin with the same sections share the nodes for those
+ * sections, so a schedule generated this way takes up only a few dozen
+ * bytes until its time mask is asked for, where a {@link DefaultSchedule}
+ * holds its own list of sections and its own time mask.
+ * <br><br>
+ * The list of sections is built from the chain of nodes each time it is
+ * asked for, so it should not be read in tight loops; {@link #canAdd} checks
+ * each section's mask directly and builds nothing. The time mask is built
+ * each time it is asked for too, from the mask of this node's parent: a node
+ * keeps its mask only once it has been used as a parent, since such a node is
+ * shared by every schedule beginning with it. Ranking reads each schedule's
+ * mask once, to build its {@linkplain
+ * edu.rpi.scheduler.engine.KeyedComparator key}, so the last node of a
+ * schedule holds nothing but its section.
+ */
+public final class ScheduleNode implements Schedule {
+    /**
+     * Returns a chain of nodes holding the given sections, in order.
+     * @param plugin the plugin the schedule belongs to
+     * @param sections the sections of the schedule, of which there must be at
+     *        least one
+     * @return a schedule of the given sections
+     */
+    public static ScheduleNode getInstance(SchedulerDataPlugin plugin,
+            Collection<UniqueSection> sections) {
+        DefensiveTools.checkNull(plugin, "plugin");
+        DefensiveTools.checkNull(sections, "sections");
+        if (sections.isEmpty()) {
+            throw new IllegalArgumentException("sections cannot be empty");
+        }
+
+        ScheduleNode node = null;
+        for (UniqueSection section : sections) {
+            node = new ScheduleNode(plugin, node, section);
+        }
+        return node;
+    }
+
+    private final SchedulerDataPlugin plugin;
+    private final ScheduleNode parent;
+    private final UniqueSection section;
+
+    /**
+     * This node's frozen time mask, if this node has been used as a parent;
+     * otherwise {@code null}.
+     */
+    private volatile WeekMask<?> mask = null;
+
+    /**
+     * Creates a schedule of the given parent's sections plus the given
+     * section.
+     * @param plugin the plugin the schedule belongs to
+     * @param parent the schedule to add the section to, or {@code null} for
+     *        a schedule of only the given section
+     * @param section the section to add
+     */
+    public ScheduleNode(SchedulerDataPlugin plugin, ScheduleNode parent,
+            UniqueSection section) {
+        this.plugin = plugin;
+        this.parent = parent;
+        this.section = section;
+    }
+
+    public SchedulerDataPlugin getSchedulerPlugin() { return plugin; }
+
+    /**
+     * Returns the schedule this schedule's last section was added to.
+     * @return this schedule without its last section, or {@code null} if
+     *         this schedule has only one section
+     */
+    public ScheduleNode getParent() { return parent; }
+
+    /**
+     * Returns the last section of this schedule.
+     * @return the section this node added
+     */
+    public UniqueSection getSection() { return section; }
+
+    /**
+     * Always throws {@code UnsupportedOperationException}, as schedule nodes
+     * cannot be changed. Create a new node with this node as its parent
+     * instead.
+     */
+    public void addSection(UniqueSection section) {
+        throw new UnsupportedOperationException();
+    }
+
+    public boolean canAdd(UniqueSection section) {
+        return canAdd(section.getTimeMask());
+    }
+
+    public boolean canAdd(WeekMask<?> mask) {
+        for (ScheduleNode node = this; node != null; node = node.parent) {
+            if (!mask.fitsInto(node.section.getTimeMask())) return false;
+        }
+        return true;
+    }
+
+    public WeekMask<?> getTimeMask() {
+        WeekMask<?> mask = this.mask;
+        if (mask != null) return mask;
+
+        WeekMask<?> built = plugin.getTimeRepresentation().newWeekMask();
+        built.merge(section.getTimeMask());
+        if (parent != null) built.merge(parent.getPrefixMask());
+        return built.freeze();
+    }
+
+    /**
+     * Returns this node's time mask, keeping it, as this node is the parent
+     * of another and so shared by the schedules which begin with it.
+     */
+    private WeekMask<?> getPrefixMask() {
+        WeekMask<?> mask = this.mask;
+        if (mask == null) {
+            mask = getTimeMask();
+            this.mask = mask;
+        }
+        return mask;
+    }
+
+    public List<UniqueSection> getSections() {
+        int count = 0;
+        for (ScheduleNode node = this; node != null; node = node.parent) {
+            count++;
+        }
+        UniqueSection[] sections = new UniqueSection[count];
+        for (ScheduleNode node = this; node != null; node = node.parent) {
+            sections[--count] = node.section;
+        }
+        return Collections.unmodifiableList(Arrays.asList(sections));
+    }
+
+    public WeekMask<?> getClassMask() {
+        return getTimeMask();
+    }
+
+    public int getDaysOfClass() {
+        return DefaultSchedule.getDaysOfClass(getClassMask());
+    }
+
+    /**
+     * Returns the number of blocks of class on each day, from the day with
+     * the most class to the day with the least. The array is new each time,
+     * so the caller may change it.
+     */
+    public int[] getTimeSums() {
+        return DefaultSchedule.getTimeSums(getClassMask());
+    }
+
+    public List<List<TimePeriod>> getBetweens() {
+        return DefaultSchedule.getBetweens(getSections());
+    }
+}
@@ -61,15 +61,18 @@ public final class UniqueSection {
     private SectionNumber lowest = null;
 
     /**
-     * Creates a new {@code UniqueSection} with the given time mask.
+     * Creates a new {@code UniqueSection} with the given time mask. A
+     * {@linkplain WeekMask#snapshot snapshot} of the mask is kept, so a
+     * section's own interned mask is shared rather than copied.
      * @param mask the time mask of this set of sections
      */
     public UniqueSection(WeekMask<?> mask) {
-        this.mask = mask;
+        this.mask = mask.snapshot();
     }
 
     /**
-     * Returns the time mask of these sections.
+     * Returns the time mask of these sections, which is frozen and so may be
+     * read from any thread.
      * @return the time mask of the sections represented
      */
     public WeekMask<?> getTimeMask() { return mask; }
@@ -36,9 +36,20 @@ package edu.rpi.scheduler.schedb;
 import edu.rpi.scheduler.schedb.spec.DayMask;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Collection;
 
+/**
+ * The blocks of time in a week during which something happens, one {@link
+ * DayMask} per day.
+ * <br><br>
+ * A new mask can be changed, and is meant to be built up or edited by a
+ * single thread. A {@linkplain #snapshot snapshot} of it is frozen: it
+ * cannot be changed, so it can be shared between threads and kept without
+ * copying. Sections, unique sections, schedules and the engine's blocked
+ * time all hand out frozen masks; use {@link #mutableCopy} to edit one.
+ */
 public class WeekMask<DM extends DayMask> {
     public static <DM extends DayMask> WeekMask<DM> newMask(Class<DM> cl) {
         try {
@@ -52,7 +63,47 @@ public class WeekMask<DM extends DayMask> {
         }
     }
 
+    /**
+     * Returns an empty week mask whose days are stored together in one
+     * array, with room for at least the given number of blocks per day. Two
+     * such masks of the same size are checked and merged a word of blocks
+     * at a time, with no day mask calls in between.
+     * @param blocks the number of blocks in a day
+     * @return a new, empty flat week mask
+     */
+    public static WeekMask<FlatDayMask> newFlatMask(int blocks) {
+        int length = (blocks + 63) >>> 6;
+        long[] words = new long[7 * length];
+        return new WeekMask<FlatDayMask>(getFlatDays(words, false), words);
+    }
+
+    /**
+     * Returns the day masks of a flat week mask stored in the given array.
+     */
+    private static List<FlatDayMask> getFlatDays(long[] words,
+            boolean frozen) {
+        int length = words.length / 7;
+        List<FlatDayMask> days = new ArrayList<FlatDayMask>(7);
+        for (int i = 0; i < 7; i++) {
+            days.add(new FlatDayMask(words, i * length, length, frozen));
+        }
+        return days;
+    }
+
     private final List<DM> days;
+    /**
+     * The blocks of every day, one day after another, if this is a
+     * {@linkplain #newFlatMask flat mask}; otherwise {@code null}.
+     */
+    private final long[] words;
+    /** Whether this mask can no longer be changed. */
+    private final boolean frozen;
+    /** The pool this mask was interned in, or {@code null}. */
+    private final WeekMaskPool pool;
+    /** This mask's id in its pool, or {@code -1}. */
+    private final int id;
+    /** This mask's hash code, if it is frozen. */
+    private final int hash;
 
     private WeekMask(Class<DM> cl) throws IllegalAccessException,
             InstantiationException {
@@ -61,10 +112,47 @@ public class WeekMask<DM extends DayMask> {
             days.add(cl.newInstance());
         }
         this.days = days;
+        this.words = null;
+        this.frozen = false;
+        this.pool = null;
+        this.id = -1;
+        this.hash = 0;
+    }
+
+    private WeekMask(List<DM> days, long[] words) {
+        this(days, words, false, null, -1);
+    }
+
+    private WeekMask(List<DM> days, long[] words, boolean frozen,
+            WeekMaskPool pool, int id) {
+        this.days = days;
+        this.words = words;
+        this.frozen = frozen;
+        this.pool = pool;
+        this.id = id;
+        this.hash = frozen ? computeHashCode() : 0;
     }
 
+    /**
+     * Creates a changeable copy of the given mask. The copy has its own
+     * blocks, so changing it does not change the given mask.
+     */
+    @SuppressWarnings({"unchecked"})
     public WeekMask(WeekMask<? extends DM> other) {
-        this(other.days);
+        // a day mask's copy is of the same class, so it is a DM
+        if (other.words != null) {
+            this.words = other.words.clone();
+            this.days = (List<DM>) getFlatDays(words, false);
+        } else {
+            List<DM> days = new ArrayList<DM>(7);
+            for (DM day : other.days) days.add((DM) day.copy(false));
+            this.days = days;
+            this.words = null;
+        }
+        this.frozen = false;
+        this.pool = null;
+        this.id = -1;
+        this.hash = 0;
     }
 
     public WeekMask(Collection<? extends DM> mask) {
@@ -73,15 +161,102 @@ public class WeekMask<DM extends DayMask> {
                     "(it's " + mask.size() + ")");
         }
         this.days = new ArrayList<DM>(mask);
+        this.words = null;
+        this.frozen = false;
+        this.pool = null;
+        this.id = -1;
+        this.hash = 0;
 
         assert days.size() == 7;
     }
 
+    /**
+     * Returns a copy of this mask with the given place in the given pool.
+     * Only {@link WeekMaskPool#intern} calls this.
+     */
+    WeekMask<?> internedCopy(WeekMaskPool pool, int id) {
+        return copy(true, pool, id);
+    }
+
+    /**
+     * Returns a frozen copy of this mask, or this mask itself if it is
+     * already frozen.
+     * @return an unchangeable mask equal to this one
+     */
+    public final WeekMask<?> snapshot() {
+        return frozen ? this : copy(true, null, -1);
+    }
+
+    /**
+     * Returns a new mask equal to this one which can be changed, for
+     * editing a frozen mask.
+     * @return a changeable copy of this mask
+     */
+    public final WeekMask<?> mutableCopy() {
+        return copy(false, null, -1);
+    }
+
+    /**
+     * Returns a frozen mask which shares this mask's blocks if it is flat,
+     * without copying them. This mask must not be changed or handed out
+     * afterwards, so this is only for freezing a mask which was just built.
+     */
+    final WeekMask<?> freeze() {
+        if (frozen) return this;
+        if (words == null) return copy(true, null, -1);
+        return new WeekMask<FlatDayMask>(getFlatDays(words, true), words, true,
+                null, -1);
+    }
+
+    /**
+     * Returns whether this mask is frozen, and so cannot be changed.
+     * Interned masks are always frozen.
+     */
+    public final boolean isFrozen() { return frozen; }
+
+    private WeekMask<?> copy(boolean frozen, WeekMaskPool pool, int id) {
+        if (words != null) {
+            long[] copy = words.clone();
+            return new WeekMask<FlatDayMask>(getFlatDays(copy, frozen), copy,
+                    frozen, pool, id);
+        }
+        List<DayMask> days = new ArrayList<DayMask>(7);
+        for (DM day : this.days) days.add(day.copy(frozen));
+        return new WeekMask<DayMask>(days, null, frozen, pool, id);
+    }
+
+    /**
+     * Returns the pool this mask was {@linkplain WeekMaskPool#intern
+     * interned} in. An interned mask is frozen.
+     * @return this mask's pool, or {@code null} if it was not interned
+     */
+    public final WeekMaskPool getPool() { return pool; }
+
+    /**
+     * Returns this mask's id in its {@linkplain #getPool pool}. The ids of a
+     * pool's masks are numbered from zero up, with no gaps.
+     * @return this mask's id, or {@code -1} if it was not interned
+     */
+    public final int getId() { return id; }
+
+    private void checkChangeable() {
+        if (frozen) {
+            throw new UnsupportedOperationException("frozen week masks "
+                    + "cannot be changed");
+        }
+    }
+
     public final boolean isOn(int day, int block) {
         return days.get(day).isOn(block);
     }
 
     public final boolean isEmpty() {
+        if (words != null) {
+            for (long word : words) {
+                if (word != 0) return false;
+            }
+            return true;
+        }
         for (DayMask mask : days) {
             if (!mask.isEmpty()) return false;
         }
@@ -93,22 +268,47 @@ public class WeekMask<DM extends DayMask> {
     }
 
     public final boolean add(int day, int block) {
+        checkChangeable();
         return days.get(day).add(block);
     }
 
     public final boolean delete(int day, int block) {
+        checkChangeable();
         return days.get(day).delete(block);
     }
 
+    /**
+     * Turns on every block of the given day from {@code from} up to, but not
+     * including, {@code to}.
+     */
+    public final void addRange(int day, int from, int to) {
+        checkChangeable();
+        days.get(day).addRange(from, to);
+    }
+
     public final boolean fill(int day) {
+        checkChangeable();
         return days.get(day).fill();
     }
 
     public final boolean clear(int day) {
+        checkChangeable();
         return days.get(day).clear();
     }
 
+    /**
+     * Returns whether the given mask fits into the free time of this mask,
+     * that is, whether the two masks have no blocks in common.
+     */
     public final boolean fitsInto(WeekMask<?> other) {
+        long[] otherWords = other.words;
+        if (words != null && otherWords != null
+                && otherWords.length == words.length) {
+            for (int i = 0; i < words.length; i++) {
+                if ((words[i] & otherWords[i]) != 0) return false;
+            }
+            return true;
+        }
         for (int i = 0; i < 7; i++) {
             if (!days.get(i).fitsInto(other.getDayMask(i))) return false;
         }
@@ -117,17 +317,32 @@ public class WeekMask<DM extends DayMask> {
     }
 
     public final void merge(WeekMask<?> other) {
+        checkChangeable();
+        long[] otherWords = other.words;
+        if (words != null && otherWords != null
+                && otherWords.length == words.length) {
+            for (int i = 0; i < words.length; i++) words[i] |= otherWords[i];
+            return;
+        }
         for (int i = 0; i < 7; i++) {
             days.get(i).merge(other.getDayMask(i));
         }
     }
 
+    /**
+     * Returns the mask of the given day. The day masks of a {@linkplain
+     * #isFrozen frozen} mask are frozen too, and cannot be changed.
+     */
     public DM getDayMask(int day) {
         return days.get(day);
     }
 
     public int getTimeBlockSum() {
         int time = 0;
+        if (words != null) {
+            for (long word : words) time += Long.bitCount(word);
+            return time;
+        }
         for (DayMask day : days) time += day.getTimeBlockSum();
 
         return time;
@@ -136,11 +351,30 @@ public class WeekMask<DM extends DayMask> {
     public final boolean equals(Object other) {
         if (!(other instanceof WeekMask)) return false;
 
-        return days.equals(((WeekMask<?>) other).days);
+        WeekMask<?> mask = (WeekMask<?>) other;
+        if (mask == this) return true;
+        if (pool != null && mask.pool == pool) return false;
+        if (words != null && mask.words != null
+                && mask.words.length == words.length) {
+            return Arrays.equals(words, mask.words);
+        }
+        return days.equals(mask.days);
     }
 
     public int hashCode() {
+        return frozen ? hash : computeHashCode();
+    }
+
+    private int computeHashCode() {
         int code = 0;
+        if (words != null) {
+            // the same as hashing each day mask, without the calls
+            int length = words.length / 7;
+            for (int off = 0; off < words.length; off += length) {
+                code ^= FlatDayMask.hashCode(words, off, length);
+            }
+            return code;
+        }
         for (DayMask mask : days) code ^= mask.hashCode();
         return code;
     }
@@ -0,0 +1,96 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.schedb;
+
+import edu.rpi.scheduler.DefensiveTools;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A set of canonical week masks. Sections with the same class times share a
+ * single interned mask, which cannot be changed, remembers its hash code,
+ * and has a small id, unique within its pool, that can be used to index
+ * arrays. Two masks interned in the same pool are equal only if they are
+ * the same object.
+ * <br><br>
+ * Each {@link edu.rpi.scheduler.schedb.spec.TimeRepresentation} has its own
+ * pool, which is filled as a database's sections are loaded.
+ */
+public final class WeekMaskPool {
+    private final Map<WeekMask<?>,WeekMask<?>> masks
+            = new HashMap<WeekMask<?>,WeekMask<?>>();
+    private final List<WeekMask<?>> byId = new ArrayList<WeekMask<?>>();
+
+    /**
+     * Returns the mask in this pool equal to the given mask, adding a copy
+     * of the given mask to the pool if it holds no such mask yet.
+     * @param mask the mask to intern
+     * @return an unchangeable mask equal to the given mask
+     */
+    public synchronized WeekMask<?> intern(WeekMask<?> mask) {
+        DefensiveTools.checkNull(mask, "mask");
+
+        if (mask.getPool() == this) return mask;
+
+        WeekMask<?> interned = masks.get(mask);
+        if (interned == null) {
+            interned = mask.internedCopy(this, byId.size());
+            masks.put(interned, interned);
+            byId.add(interned);
+        }
+        return interned;
+    }
+
+    /**
+     * Returns the mask with the given id.
+     * @param id an id returned by {@link WeekMask#getId} for a mask in this
+     *        pool
+     * @return the mask with the given id
+     */
+    public synchronized WeekMask<?> get(int id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Returns the number of masks in this pool. Every mask in the pool has
+     * an id below this number.
+     * @return the number of distinct masks interned
+     */
+    public synchronized int size() {
+        return byId.size();
+    }
+}
@@ -33,13 +33,19 @@
 
 package edu.rpi.scheduler.schedb;
 
+import edu.rpi.scheduler.DefensiveTools;
+import edu.rpi.scheduler.schedb.spec.ClassPeriod;
 import edu.rpi.scheduler.schedb.spec.DataContext;
+import edu.rpi.scheduler.schedb.spec.DailyTimePeriod;
+import edu.rpi.scheduler.schedb.spec.SchedulerData;
 import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+import edu.rpi.scheduler.schedb.spec.Section;
 import edu.rpi.scheduler.schedb.spec.TimeRepresentation;
 
 public class XmlSchedulerDataPlugin implements SchedulerDataPlugin {
     private DefaultTimeRepresentation timeRepresentation
             = new DefaultTimeRepresentation();
+    private int minutesPerBlock = 0;
 
     public String getName() { return "XML Database Plugin"; }
 
@@ -49,6 +55,74 @@ public class XmlSchedulerDataPlugin implements SchedulerDataPlugin {
         return timeRepresentation;
     }
 
+    /**
+     * Sets the number of minutes in each block of time. If this is
+     * {@code 0}, the default, the block length is chosen when a database is
+     * loaded, by {@link #chooseMinutesPerBlock}. This must be set before a
+     * database is loaded.
+     * @param minutes the number of minutes in each block, or {@code 0} to
+     *        let the database decide
+     */
+    public void setMinutesPerBlock(int minutes) {
+        DefensiveTools.checkRange(minutes, "minutes", 0, 24*60);
+
+        minutesPerBlock = minutes;
+        timeRepresentation = new DefaultTimeRepresentation(minutes == 0
+                ? DefaultTimeRepresentation.DEFAULT_MINUTES_PER_BLOCK
+                : minutes);
+    }
+
+    /**
+     * Returns the number of minutes in each block of time set by {@link
+     * #setMinutesPerBlock}, or {@code 0} if the database decides.
+     * @return the number of minutes in each block, or {@code 0}
+     */
+    public int getMinutesPerBlock() { return minutesPerBlock; }
+
+    /**
+     * Chooses the length of the blocks of time for a newly loaded database,
+     * unless it was {@linkplain #setMinutesPerBlock set} already. This must
+     * be called before any section's time mask is created.
+     * <br><br>
+     * Two classes which start on block boundaries overlap exactly when their
+     * blocks do, so the length the database asks for is used only if every
+     * class starts on a multiple of it; otherwise the blocks are shortened to
+     * the longest length every class start is a multiple of, but never below
+     * {@linkplain DefaultTimeRepresentation#DEFAULT_MINUTES_PER_BLOCK the
+     * default}.
+     * @param minutes the number of minutes per block the database asks for,
+     *        or {@code 0} if it doesn't say
+     * @param data the database
+     */
+    public void chooseMinutesPerBlock(int minutes, SchedulerData data) {
+        if (minutesPerBlock != 0) return;
+
+        int chosen = minutes;
+        if (chosen > 0) {
+            for (Section section : data.getSections()) {
+                for (ClassPeriod period : section.getPeriods()) {
+                    DailyTimePeriod time = period.getTimePeriod();
+                    if (time == null || time.getStart() == null) continue;
+                    chosen = gcd(chosen,
+                            time.getStart().getMinutesFromMidnight());
+                }
+            }
+        }
+        if (chosen < DefaultTimeRepresentation.DEFAULT_MINUTES_PER_BLOCK) {
+            chosen = DefaultTimeRepresentation.DEFAULT_MINUTES_PER_BLOCK;
+        }
+        timeRepresentation = new DefaultTimeRepresentation(chosen);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int rest = a % b;
+            a = b;
+            b = rest;
+        }
+        return a;
+    }
+
     public DataContext newSchedulingContext() {
         return new DefaultDataContext(this);
     }
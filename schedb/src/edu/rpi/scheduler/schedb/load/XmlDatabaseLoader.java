@@ -34,12 +34,15 @@
 package edu.rpi.scheduler.schedb.load;
 
 import edu.rpi.scheduler.schedb.DefaultSchedulerData;
+import edu.rpi.scheduler.schedb.XmlSchedulerDataPlugin;
 import edu.rpi.scheduler.schedb.load.spec.DatabaseLoadListener;
 import edu.rpi.scheduler.schedb.load.spec.DatabaseLoader;
 import edu.rpi.scheduler.schedb.load.spec.DepartmentLoader;
 import edu.rpi.scheduler.schedb.spec.DataContext;
 import edu.rpi.scheduler.schedb.spec.Department;
 import edu.rpi.scheduler.schedb.spec.ResourceLoader;
+import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
+import edu.rpi.scheduler.schedb.spec.Section;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -138,9 +141,47 @@ public class XmlDatabaseLoader extends XmlLoader implements DatabaseLoader {
         }
 
         parseDepts(root);
+        parseMinutesPerBlock(root);
+        buildTimeMasks();
         parseCustomData(root);
     }
 
+    /**
+     * Lets the plugin choose its block length from the database's
+     * {@code minutes-per-block} attribute and the class times just loaded.
+     */
+    protected void parseMinutesPerBlock(Element root) {
+        SchedulerDataPlugin plugin = context.getSchedulerPlugin();
+        if (!(plugin instanceof XmlSchedulerDataPlugin)) return;
+
+        int minutes = 0;
+        Attr minutesNode = root.getAttributeNode("minutes-per-block");
+        if (minutesNode != null) {
+            try {
+                minutes = Integer.parseInt(minutesNode.getValue().trim());
+            } catch (NumberFormatException e) {
+                logger.log(Level.WARNING, "Invalid minutes-per-block value", e);
+            }
+            if (minutes < 0 || minutes > 24*60) {
+                logger.warning("Invalid minutes-per-block value " + minutes);
+                minutes = 0;
+            }
+        }
+        ((XmlSchedulerDataPlugin) plugin).chooseMinutesPerBlock(minutes,
+                dataContext.getSchedulerDataObj());
+    }
+
+    /**
+     * Builds every section's time mask, now that the block length is known,
+     * so the sections with the same class times share one mask from the
+     * start.
+     */
+    protected void buildTimeMasks() {
+        for (Section section : dataContext.getSchedulerDataObj().getSections()) {
+            section.getWeekMask();
+        }
+    }
+
     protected void parseCustomData(Element root) {
     }
 
@@ -38,10 +38,35 @@ public interface DayMask {
     boolean isEmpty();
     boolean add(int block);
     boolean delete(int block);
+
+    /**
+     * Turns on every block from {@code from} up to, but not including,
+     * {@code to}.
+     */
+    void addRange(int from, int to);
     boolean fill();
     boolean clear();
     boolean fitsInto(DayMask other);
     void merge(DayMask other);
     int getMaxBlockNum();
     int getTimeBlockSum();
+
+    /**
+     * Returns the first block at or after the given block which is on, or
+     * {@code -1} if there is none.
+     */
+    int nextSetBlock(int from);
+
+    /**
+     * Returns the first block at or after the given block which is off. Every
+     * block past {@link #getMaxBlockNum} is off.
+     */
+    int nextClearBlock(int from);
+
+    /**
+     * Returns a new mask of the same class with the same blocks on as this
+     * one. A frozen copy cannot be changed: the methods which would change it
+     * throw {@code UnsupportedOperationException}.
+     */
+    DayMask copy(boolean frozen);
 }
@@ -46,14 +46,27 @@ public interface Schedule {
 
     boolean canAdd(WeekMask<?> mask);
 
+    /**
+     * Returns the times of this schedule's classes, as a {@linkplain
+     * WeekMask#isFrozen frozen} mask.
+     */
     WeekMask<?> getTimeMask();
 
     Collection<UniqueSection> getSections();
 
+    /**
+     * Returns the times of this schedule's classes, as a {@linkplain
+     * WeekMask#isFrozen frozen} mask.
+     */
     WeekMask<?> getClassMask();
 
     int getDaysOfClass();
 
+    /**
+     * Returns the number of blocks of class on each day, from the day with
+     * the most class to the day with the least. The array may be kept by the
+     * schedule, so it must not be changed.
+     */
     int[] getTimeSums();
 
     List<List<TimePeriod>> getBetweens();
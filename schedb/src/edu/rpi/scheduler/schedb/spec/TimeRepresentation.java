@@ -36,6 +36,7 @@ package edu.rpi.scheduler.schedb.spec;
 import edu.rpi.scheduler.schedb.Time;
 import edu.rpi.scheduler.schedb.Duration;
 import edu.rpi.scheduler.schedb.WeekMask;
+import edu.rpi.scheduler.schedb.WeekMaskPool;
 
 public interface TimeRepresentation {
     WeekMask<?> newWeekMask();
@@ -46,5 +47,11 @@ public interface TimeRepresentation {
 
     WeekMask<?> getWeekMask(DailyTimePeriod time);
 
+    /**
+     * Returns the pool which sections' time masks are interned in. Masks
+     * from this pool have this representation's block length.
+     */
+    WeekMaskPool getMaskPool();
+
     static enum Bias { EARLIER, LATER, CLOSEST }
 }
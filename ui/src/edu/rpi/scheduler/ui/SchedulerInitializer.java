@@ -36,8 +36,10 @@ package edu.rpi.scheduler.ui;
 import static edu.rpi.scheduler.schedb.load.spec.DataObjectType.SECTION;
 import static edu.rpi.scheduler.ui.WindowType.LOADING_PROGRESS;
 import edu.rpi.scheduler.CopyOnWriteArrayList;
+import edu.rpi.scheduler.engine.ScheduleGenerator;
 import edu.rpi.scheduler.engine.SchedulerEngine;
 import edu.rpi.scheduler.schedb.DefaultXmlDataPlugin;
+import edu.rpi.scheduler.schedb.XmlSchedulerDataPlugin;
 import edu.rpi.scheduler.schedb.load.DbLoadException;
 import edu.rpi.scheduler.schedb.load.spec.DataLoadingContext;
 import edu.rpi.scheduler.schedb.load.spec.DatabaseLoadListener;
@@ -45,6 +47,7 @@ import edu.rpi.scheduler.schedb.load.spec.DatabaseLoader;
 import edu.rpi.scheduler.schedb.spec.DataContext;
 import edu.rpi.scheduler.schedb.spec.SchedulerDataPlugin;
 import edu.rpi.scheduler.schedb.spec.ResourceLoader;
+import edu.rpi.scheduler.schedb.spec.Schedule;
 import edu.rpi.scheduler.schedb.spec.SchedulerData;
 import edu.rpi.scheduler.ui.savesched.LoadedSchedule;
 import edu.rpi.scheduler.ui.savesched.LoadedScheduleWindow;
@@ -52,6 +55,9 @@ import edu.rpi.scheduler.ui.savesched.LoadedScheduleWindow;
 import javax.swing.JOptionPane;
 import javax.swing.SwingUtilities;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.net.URL;
@@ -65,9 +71,22 @@ public class SchedulerInitializer {
             = Logger.getLogger(SchedulerInitializer.class.getName());
     //TOMAYBE: load cached UI config before looking over network
 
+    /**
+     * A generous estimate of how much memory a generated schedule takes up,
+     * in bytes. A schedule is a chain of shared schedule nodes, of which
+     * each schedule adds about one, plus the time masks kept by the nodes
+     * it shares with other schedules, and an entry in each ranking order:
+     * about 200 bytes in all.
+     */
+    private static final int ESTIMATED_SCHEDULE_SIZE = 512;
+
     public static final String SYSPROP_DBURL = "scheduler.dburl";
     public static final String SYSPROP_DBPLUGINNAME = "scheduler.dbplugin";
     public static final String SYSPROP_UIPLUGINNAME = "scheduler.uiplugin";
+    public static final String SYSPROP_MINUTESPERBLOCK
+            = "scheduler.minutesperblock";
+    public static final String SYSPROP_MAXSCHEDULES = "scheduler.maxschedules";
+    public static final String SYSPROP_GENERATOR = "scheduler.generator";
 
     private LoadingProgressWindow progressWindow = new LoadingProgressWindow();
     private BackgroundWorker worker = new BackgroundWorker();
@@ -244,6 +263,17 @@ public class SchedulerInitializer {
                 return false;
             }
         }
+        String minutes = System.getProperty(SYSPROP_MINUTESPERBLOCK);
+        if (minutes != null && plugin instanceof XmlSchedulerDataPlugin) {
+            try {
+                ((XmlSchedulerDataPlugin) plugin).setMinutesPerBlock(
+                        Integer.parseInt(minutes.trim()));
+            } catch (IllegalArgumentException e) {
+                showError("Your school's scheduler administrators have "
+                        + "misconfigured the length of a block of time.", e);
+                return false;
+            }
+        }
         session.setDataPlugin(plugin);
         return true;
     }
@@ -372,6 +402,67 @@ public class SchedulerInitializer {
         SchedulerEngine engine = session.getEngine();
         SchedulerData schedulerData = loadContext.getSchedulerDataObj();
         engine.setSchedulerData(schedulerData);
+        engine.setParallelism(Runtime.getRuntime().availableProcessors());
+
+        engine.setMaxSchedules(getMaxSchedules());
+        ScheduleGenerator generator = getScheduleGenerator();
+        if (generator != null) engine.setScheduleGenerator(generator);
+
+        // rank the schedules by every ranking method up front, so switching
+        // between them is instant
+        List<Comparator<Schedule>> rankings = new ArrayList<Comparator<Schedule>>();
+        for (RankingMethod method : session.getUIPlugin().getRankingMethods()) {
+            rankings.add(method.getComparator());
+        }
+        engine.setRankingOrders(rankings);
+    }
+
+    /**
+     * Returns the most schedules to generate at once: the value of the
+     * {@link #SYSPROP_MAXSCHEDULES} system property if it is set, or as many
+     * as fit into half of the heap, leaving the rest for everything else.
+     */
+    private int getMaxSchedules() {
+        String maxstr = System.getProperty(SYSPROP_MAXSCHEDULES);
+        if (maxstr != null) {
+            try {
+                int max = Integer.parseInt(maxstr.trim());
+                if (max > 0) return max;
+            } catch (NumberFormatException ignored) { }
+            logger.warning("Invalid " + SYSPROP_MAXSCHEDULES + " value "
+                    + maxstr);
+        }
+        long maxSchedules = Runtime.getRuntime().maxMemory() / 2
+                / ESTIMATED_SCHEDULE_SIZE;
+        return (int) Math.min(maxSchedules, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Returns the schedule generator named by the {@link #SYSPROP_GENERATOR}
+     * system property: {@code kernel} or {@code dancing-links} for the
+     * built-in generators, or the name of a class implementing {@link
+     * ScheduleGenerator}.
+     * @return the generator to use, or {@code null} to use the engine's
+     *         default
+     */
+    private ScheduleGenerator getScheduleGenerator() {
+        String name = System.getProperty(SYSPROP_GENERATOR);
+        if (name == null) return null;
+
+        name = name.trim();
+        if (name.equalsIgnoreCase("kernel")) {
+            return ScheduleGenerator.KERNEL;
+        } else if (name.equalsIgnoreCase("dancing-links")) {
+            return ScheduleGenerator.DANCING_LINKS;
+        }
+        try {
+            return (ScheduleGenerator) Class.forName(name).getConstructor()
+                    .newInstance();
+        } catch (Exception e) {
+            logger.log(Level.WARNING, "Could not create schedule generator "
+                    + name + ", using the default", e);
+            return null;
+        }
     }
 
     public void setCodebase(URL codebase) {
@@ -45,11 +45,17 @@ import edu.rpi.scheduler.schedb.spec.GradeType;
 import edu.rpi.scheduler.schedb.spec.Notes;
 import edu.rpi.scheduler.schedb.spec.Schedule;
 import edu.rpi.scheduler.schedb.spec.ResourceLoader;
+import edu.rpi.scheduler.schedb.spec.TimeRepresentation;
 import edu.rpi.scheduler.ui.panels.courses.indexer.SearchKey;
 import edu.rpi.scheduler.ui.panels.courses.indexer.SearchType;
 import edu.rpi.scheduler.ui.panels.courses.ConflictDetector;
 import edu.rpi.scheduler.ui.panels.courses.SelectedCoursesList;
+import edu.rpi.scheduler.engine.KeyedComparator;
+import edu.rpi.scheduler.engine.MonotonicComparator;
+import edu.rpi.scheduler.engine.ScheduleMetric;
+import edu.rpi.scheduler.engine.ScheduleMetrics;
 import edu.rpi.scheduler.engine.SelectedCourse;
+import edu.rpi.scheduler.engine.WeightedScore;
 import org.jdom.Document;
 import org.jdom.Element;
 import org.jdom.JDOMException;
@@ -86,28 +92,11 @@ public class XmlConfiguredUIPlugin implements SchedulerUIPlugin {
     public static final String SYSPROP_UI_CONFIG_URL = "scheduler.ui.configfile";
 
     public static final Comparator<Schedule> BY_DAYS_OF_CLASS
-            = new Comparator<Schedule>() {
-                public int compare(Schedule o1, Schedule o2) {
-                    int d1 = o1.getDaysOfClass();
-                    int d2 = o2.getDaysOfClass();
-
-                    return d1 > d2 ? 1 : (d1 == d2 ? 0 : -1);
-                }
-            };
+            = new DaysOfClassComparator();
     public static final Comparator<Schedule> BY_CLASS_TIME
-            = new Comparator<Schedule>() {
-                public int compare(Schedule o1, Schedule o2) {
-                    return -compareArrays(o1.getTimeSums(), o2.getTimeSums());
-                }
-            };
+            = new ClassTimeComparator();
     public static final Comparator<Schedule> BY_TIME_BETWEEN
-            = new Comparator<Schedule>() {
-                public int compare(Schedule o1, Schedule o2) {
-                    int min1 = SchedulerTools.getSmallestBreak(o1);
-                    int min2 = SchedulerTools.getSmallestBreak(o2);
-                    return min1 < min2 ? -1 : (min1 > min2 ? 1 : 0);
-                }
-            };
+            = new TimeBetweenComparator();
 
     protected static final String ITEM_HR = "<HR>";
 
@@ -137,6 +126,57 @@ public class XmlConfiguredUIPlugin implements SchedulerUIPlugin {
         return d1.length < d2.length ? -1 : (d1.length == d2.length ? 0 : 1);
     }
 
+    private static class DaysOfClassComparator extends MonotonicComparator
+            implements KeyedComparator {
+        public int compare(Schedule o1, Schedule o2) {
+            int d1 = o1.getDaysOfClass();
+            int d2 = o2.getDaysOfClass();
+
+            return d1 > d2 ? 1 : (d1 == d2 ? 0 : -1);
+        }
+
+        public int getKeyLength() { return 1; }
+
+        public void getKey(Schedule schedule, long[] key, int off) {
+            key[off] = schedule.getDaysOfClass();
+        }
+    }
+
+    private static class ClassTimeComparator extends MonotonicComparator
+            implements KeyedComparator {
+        public int compare(Schedule o1, Schedule o2) {
+            return -compareArrays(o1.getTimeSums(), o2.getTimeSums());
+        }
+
+        public int getKeyLength() { return 4; }
+
+        public void getKey(Schedule schedule, long[] key, int off) {
+            // the time sums, one for each day of the week, two to a long;
+            // they're never negative, so the packed values sort the same
+            int[] sums = schedule.getTimeSums();
+            for (int i = 0; i < 4; i++) {
+                long high = 2 * i < sums.length ? sums[2 * i] : 0;
+                long low = 2 * i + 1 < sums.length ? sums[2 * i + 1] : 0;
+                key[off + i] = high << 32 | low;
+            }
+        }
+    }
+
+    private static class TimeBetweenComparator
+            implements KeyedComparator {
+        public int compare(Schedule o1, Schedule o2) {
+            int min1 = SchedulerTools.getSmallestBreak(o1);
+            int min2 = SchedulerTools.getSmallestBreak(o2);
+            return min1 < min2 ? -1 : (min1 > min2 ? 1 : 0);
+        }
+
+        public int getKeyLength() { return 1; }
+
+        public void getKey(Schedule schedule, long[] key, int off) {
+            key[off] = SchedulerTools.getSmallestBreak(schedule);
+        }
+    }
+
     private String adminName = null;
     private String adminEmail = null;
     private String programName = null;
@@ -153,10 +193,12 @@ public class XmlConfiguredUIPlugin implements SchedulerUIPlugin {
     private SchedulingSession session;
     private String aboutBoxText = null;
 
-    private List<RankingMethod> rankingMethods = Arrays.asList(
+    private List<RankingMethod> rankingMethods = new ArrayList<RankingMethod>(
+            Arrays.asList(
             new RankingMethod("Class time", BY_CLASS_TIME),
             new RankingMethod("Days of class", BY_DAYS_OF_CLASS),
-            new RankingMethod("Shortest break", BY_TIME_BETWEEN));
+            new RankingMethod("Shortest break", BY_TIME_BETWEEN)));
+    private List<Element> unreadRankingMethods = null;
 
     public XmlConfiguredUIPlugin(SchedulingSession session) {
         this.session = session;
@@ -401,6 +443,111 @@ public class XmlConfiguredUIPlugin implements SchedulerUIPlugin {
                 }
             }
         }
+        Element rankingsel = root.getChild("ranking-methods");
+        if (rankingsel != null) {
+            // the criteria are turned into time blocks only once the
+            // database has been loaded, since the database may change how
+            // long a time block is
+            @SuppressWarnings({"unchecked"})
+            List<Element> rankingels = rankingsel.getChildren("ranking-method");
+            unreadRankingMethods = rankingels;
+        }
+    }
+
+    private void readRankingMethods(List<Element> rankingels) {
+        for (Element rmel : rankingels) {
+            String name = rmel.getAttributeValue("name");
+            List<ScheduleMetric> metrics = new ArrayList<ScheduleMetric>();
+            List<Integer> weights = new ArrayList<Integer>();
+            @SuppressWarnings({"unchecked"})
+            List<Element> criterionels = rmel.getChildren("criterion");
+            for (Element crel : criterionels) {
+                String weightstr = crel.getAttributeValue("weight", "1");
+                int weight;
+                try {
+                    weight = Integer.parseInt(weightstr.trim());
+                } catch (NumberFormatException e) {
+                    weight = -1;
+                }
+                ScheduleMetric metric = readMetric(crel);
+                if (metric == null || weight < 0) {
+                    logger.warning("UI: Invalid criterion for ranking "
+                            + "method '" + name + "': type="
+                            + crel.getAttributeValue("type") + ", weight="
+                            + weightstr);
+                } else {
+                    metrics.add(metric);
+                    weights.add(weight);
+                }
+            }
+
+            if (name == null || metrics.isEmpty()) {
+                logger.warning("UI: Incomplete ranking method entry, name='"
+                        + name + "'");
+            } else {
+                int[] weightArray = new int[weights.size()];
+                for (int i = 0; i < weightArray.length; i++) {
+                    weightArray[i] = weights.get(i);
+                }
+                rankingMethods.add(new RankingMethod(name,
+                        new WeightedScore(metrics, weightArray)));
+            }
+        }
+    }
+
+    private ScheduleMetric readMetric(Element crel) {
+        String type = crel.getAttributeValue("type");
+        TimeRepresentation timeRep
+                = session.getDataPlugin().getTimeRepresentation();
+        int minsPerBlock = timeRep.getDuration(1).getTotalMinutes();
+        if ("days-of-class".equals(type)) {
+            return ScheduleMetrics.DAYS_OF_CLASS;
+
+        } else if ("total-gaps".equals(type)) {
+            return ScheduleMetrics.getTotalGapsMetric(minsPerBlock);
+
+        } else if ("earliest-start".equals(type)) {
+            Time time = readTime(crel.getAttributeValue("time"));
+            if (time == null) return null;
+            return ScheduleMetrics.getEarliestStartMetric(
+                    timeRep.getClosestBlock(time, TimeRepresentation.Bias.CLOSEST),
+                    minsPerBlock);
+
+        } else if ("latest-end".equals(type)) {
+            Time time = readTime(crel.getAttributeValue("time"));
+            if (time == null) return null;
+            return ScheduleMetrics.getLatestEndMetric(
+                    timeRep.getClosestBlock(time, TimeRepresentation.Bias.CLOSEST),
+                    minsPerBlock);
+
+        } else if ("lunch".equals(type)) {
+            Time start = readTime(crel.getAttributeValue("start-time"));
+            Time end = readTime(crel.getAttributeValue("end-time"));
+            int mins;
+            try {
+                mins = Integer.parseInt(
+                        crel.getAttributeValue("minutes", "60").trim());
+            } catch (NumberFormatException e) {
+                return null;
+            }
+            if (start == null || end == null || mins <= 0) return null;
+
+            int startMins = start.getMinutesFromMidnight();
+            if (startMins + mins > end.getMinutesFromMidnight()) return null;
+
+            int from = timeRep.getClosestBlock(start,
+                    TimeRepresentation.Bias.LATER);
+            int to = timeRep.getClosestBlock(end, TimeRepresentation.Bias.EARLIER);
+            Time lunchEnd = new Time((startMins + mins) / 60,
+                    (startMins + mins) % 60);
+            int length = timeRep.getClosestBlock(lunchEnd,
+                    TimeRepresentation.Bias.LATER) - from;
+            if (length < 1 || from + length > to) return null;
+            return ScheduleMetrics.getNoLunchMetric(from, to, length);
+
+        } else {
+            return null;
+        }
     }
 
     protected static boolean[] readDays(String daysstr)
@@ -606,7 +753,11 @@ public class XmlConfiguredUIPlugin implements SchedulerUIPlugin {
         return text;
     }
 
-    public List<RankingMethod> getRankingMethods() {
+    public synchronized List<RankingMethod> getRankingMethods() {
+        if (unreadRankingMethods != null) {
+            readRankingMethods(unreadRankingMethods);
+            unreadRankingMethods = null;
+        }
         return rankingMethods;
     }
 
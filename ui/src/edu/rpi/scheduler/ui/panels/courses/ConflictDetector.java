@@ -37,8 +37,6 @@ import edu.rpi.scheduler.CopyOnWriteArrayList;
 import edu.rpi.scheduler.engine.SchedulerEngine;
 import edu.rpi.scheduler.engine.SelectedCourse;
 import edu.rpi.scheduler.schedb.CourseDescriptor;
-import edu.rpi.scheduler.schedb.spec.Schedule;
-import edu.rpi.scheduler.schedb.spec.Section;
 import edu.rpi.scheduler.ui.BackgroundWorker;
 import edu.rpi.scheduler.ui.SchedulingSession;
 
@@ -62,11 +60,16 @@ public class ConflictDetector {
 
     private Map<CourseDescriptor,Collection<SelectedCourse>> selectedConflicts
             = new HashMap<CourseDescriptor, Collection<SelectedCourse>>();
-    private Map<CourseDescriptor,Boolean> cachedWouldFitAnySchedule
-            = new HashMap<CourseDescriptor, Boolean>();
 
     private BackgroundWorker preschedulerWorker;
-    private volatile boolean valid = false;
+    private volatile Collection<CourseDescriptor> checkedCourses
+            = Collections.emptyList();
+    /**
+     * Courses drawn before their fit was known, waiting to be checked in the
+     * background.
+     */
+    private final Set<CourseDescriptor> uncheckedCourses
+            = new HashSet<CourseDescriptor>();
 
     public ConflictDetector(SchedulingSession session,
             SelectedCoursesList selectedCoursesModel) {
@@ -99,7 +102,6 @@ public class ConflictDetector {
             public void coursesChanged(SelectedCoursesList courseList) {
                 preScheduler.setSelectedCourses(courseList.getSelectedCourses());
                 selectedConflicts.clear();
-                cachedWouldFitAnySchedule.clear();
                 setConflictsChanged();
             }
 
@@ -119,48 +121,18 @@ public class ConflictDetector {
         });
 
         preScheduler = new SchedulerEngine(session.getEngine().getSchedulerData());
+        preScheduler.setParallelism(Runtime.getRuntime().availableProcessors());
         preschedulerWorker = new BackgroundWorker();
         preschedulerWorker.start();
-//        preScheduler.addEngineListener(new EngineListener() {
-//            public void schedulesGenerated(SchedulerEngine engine) {
-//                handleSchedulesGenerated();
-//            }
-//        });
-    }
-
-    private void handleSchedulesGenerated() {
-        valid = preschedulerWorker.isQueueEmpty();
-        fireConflictsChanged();
     }
 
     private void handleRequiredCoursesAdded(
             Collection<SelectedCoursesList.SelectedCourseHolder> added) {
-        for (Iterator<Map.Entry<CourseDescriptor,Boolean>> it
-                = cachedWouldFitAnySchedule.entrySet().iterator();
-             it.hasNext();) {
-            boolean wouldFit = it.next().getValue();
-            if (wouldFit) {
-                // if it would fit before, it might not now
-                it.remove();
-            }
-        }
         selectedConflicts.clear();
         setConflictsChanged();
     }
 
     private void handleRequiredCoursesRemoved(Set<CourseDescriptor> removedCourses) {
-        for (Iterator<Map.Entry<CourseDescriptor,Boolean>> it
-                = cachedWouldFitAnySchedule.entrySet().iterator();
-             it.hasNext();) {
-
-            Map.Entry<CourseDescriptor,Boolean> entry = it.next();
-            boolean wouldFit = entry.getValue();
-            if (!wouldFit) {
-                // if it wouldn't fit before, it might now
-                it.remove();
-            }
-        }
-
         for (Collection<SelectedCourse> conflicts : selectedConflicts.values()) {
             for (Iterator<SelectedCourse> it = conflicts.iterator(); it.hasNext();) {
                 SelectedCourse course = it.next();
@@ -180,38 +152,72 @@ public class ConflictDetector {
     }
 
     private void setConflictsChanged() {
-        valid = false;
-        fireConflictsChanged();
+        final Collection<CourseDescriptor> courses = checkedCourses;
         preschedulerWorker.workOn(new Runnable() {
             public void run() {
-                preScheduler.generateSchedules();
-                handleSchedulesGenerated();
+                preScheduler.isFeasible();
+                preScheduler.getFeasibility(courses);
+                fireConflictsChanged();
             }
         });
     }
 
-    public boolean wouldFitAnySchedule(CourseDescriptor toAdd) {
-        Boolean would = cachedWouldFitAnySchedule.get(toAdd);
-        if (valid && would == null && !preScheduler.isWorking()) {
-            List<Schedule> schedules = preScheduler.getGeneratedSchedules();
-            if (schedules.isEmpty()) {
-                would = true;
-            } else {
-                Outer: for (Schedule sched : schedules) {
-                    for (Section section : toAdd.getActualCourse().getSections()) {
-                        if (section.getWeekMask().fitsInto(sched.getTimeMask())) {
-                            would = true;
-                            break Outer;
-                        }
-                    }
-                }
-                if (would == null) would = false;
+    private void checkLater(CourseDescriptor course) {
+        synchronized (uncheckedCourses) {
+            // only the first course waiting needs to start a check; the
+            // rest are checked along with it
+            if (!uncheckedCourses.add(course) || uncheckedCourses.size() > 1) {
+                return;
             }
-            cachedWouldFitAnySchedule.put(toAdd, would);
         }
+        preschedulerWorker.workOn(new Runnable() {
+            public void run() {
+                List<CourseDescriptor> courses;
+                synchronized (uncheckedCourses) {
+                    courses = new ArrayList<CourseDescriptor>(uncheckedCourses);
+                    uncheckedCourses.clear();
+                }
+                preScheduler.isFeasible();
+                preScheduler.getFeasibility(courses);
+                fireConflictsChanged();
+            }
+        });
+    }
+
+    /**
+     * Sets the courses, such as those of the department being shown, whose
+     * {@linkplain #wouldFitAnySchedule fit} is worked out in the background
+     * each time the selected courses change, so that it is known by the time
+     * they are drawn.
+     * @param courses the courses to check ahead of time
+     */
+    public void setCheckedCourses(Collection<CourseDescriptor> courses) {
+        checkedCourses = new ArrayList<CourseDescriptor>(courses);
+        setConflictsChanged();
+    }
 
-        if (would == null) return true;
-        else return would;
+    /**
+     * Returns whether the given course could be added to some schedule of the
+     * selected courses. This is called while painting, so it never searches:
+     * until the answer has been worked out in the background, the course is
+     * said to fit, and listeners are told once the answer is known.
+     */
+    public boolean wouldFitAnySchedule(CourseDescriptor toAdd) {
+        Boolean feasible = preScheduler.getCachedFeasibility();
+        if (feasible == null) {
+            checkLater(toAdd);
+            return true;
+        }
+        // if the required courses can't be scheduled at all, it's not the
+        // new course's fault
+        if (!feasible) return true;
+
+        Boolean fits = preScheduler.getCachedFeasibility(toAdd);
+        if (fits == null) {
+            checkLater(toAdd);
+            return true;
+        }
+        return fits;
     }
 
     public Collection<SelectedCourse> getSelectedConflicts(CourseDescriptor toAdd) {
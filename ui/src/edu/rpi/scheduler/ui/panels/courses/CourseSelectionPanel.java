@@ -699,7 +699,12 @@ public class CourseSelectionPanel extends DefaultSubpanel {
 
     /* Synchronizing UI */
     private void updateDept() {
-        possibleCoursesModel.setDept(departmentModel.getSelectedDept());
+        Department dept = departmentModel.getSelectedDept();
+        possibleCoursesModel.setDept(dept);
+        if (dept != null) {
+            conflictDetector.setCheckedCourses(CourseDescriptor.getDescriptors(
+                    dept, dept.getCourses()));
+        }
     }
 
     private void updateAddButtons() {
@@ -0,0 +1,230 @@
+/*
+ *  Copyright (c) 2004, The University Scheduler Project
+ *  All rights reserved.
+ *
+ *  Redistribution and use in source and binary forms, with or without
+ *  modification, are permitted provided that the following conditions
+ *  are met:
+ *
+ *  - Redistributions of source code must retain the above copyright
+ *    notice, this list of conditions and the following disclaimer.
+ *  - Redistributions in binary form must reproduce the above copyright
+ *    notice, this list of conditions and the following disclaimer in
+ *    the documentation and/or other materials provided with the
+ *    distribution.
+ *  - Neither the name of the University Scheduler Project nor the names of its
+ *    contributors may be used to endorse or promote products derived
+ *    from this software without specific prior written permission.
+ *
+ *  THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ *  "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ *  LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS
+ *  FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE
+ *  COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT,
+ *  INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+ *  BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES;
+ *  LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER
+ *  CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN CONTRACT, STRICT
+ *  LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN
+ *  ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ *  POSSIBILITY OF SUCH DAMAGE.
+ *
+ */
+
+package edu.rpi.scheduler.ui.panels.view;
+
+import edu.rpi.scheduler.engine.EngineListener;
+import edu.rpi.scheduler.engine.GenerationProgress;
+import edu.rpi.scheduler.engine.SchedulerEngine;
+
+import javax.swing.JDialog;
+import javax.swing.JLabel;
+import javax.swing.JOptionPane;
+import javax.swing.JProgressBar;
+import javax.swing.SwingUtilities;
+import java.awt.Component;
+import java.text.NumberFormat;
+
+/**
+ * Generates or counts an engine's schedules on a background thread while the
+ * event thread shows their progress. If generation takes more than a moment,
+ * a modal dialog shows a progress bar and the number of schedules found so
+ * far, with a button which {@linkplain SchedulerEngine#cancelGeneration
+ * cancels} the generation.
+ */
+class GenerationProgressDialog implements EngineListener {
+    /** How long to wait before showing the dialog, in milliseconds. */
+    private static final long SHOW_DELAY = 300;
+    /** The progress bar's maximum, for a generation which is done. */
+    private static final int PROGRESS_MAX = 1000;
+
+    private final SchedulerEngine engine;
+    private final JLabel statusLabel = new JLabel("Generating schedules...");
+    private final JProgressBar progressBar = new JProgressBar(0, PROGRESS_MAX);
+    private final NumberFormat format = NumberFormat.getIntegerInstance();
+
+    private JDialog dialog = null;
+    /**
+     * The thread doing the current task. This is only used on the event
+     * thread.
+     */
+    private Thread worker = null;
+    /**
+     * Whether the current task has finished. This is only used on the event
+     * thread.
+     */
+    private boolean finished = false;
+
+    GenerationProgressDialog(SchedulerEngine engine) {
+        this.engine = engine;
+
+        progressBar.setIndeterminate(true);
+        format.setGroupingUsed(true);
+    }
+
+    /**
+     * Counts the engine's possible schedules, showing the dialog over the
+     * given component if it takes long. This must be called from the event
+     * thread, and returns once the count is done or has been cancelled.
+     * @param parent the component to show the dialog over
+     * @return the number of possible schedules, or {@code -1} if counting
+     *         was cancelled
+     */
+    long count(Component parent) {
+        final long[] count = { -1 };
+        statusLabel.setText("Counting possible schedules...");
+        boolean done = run(parent, new Runnable() {
+            public void run() {
+                count[0] = engine.countSchedules();
+            }
+        });
+        return done ? count[0] : -1;
+    }
+
+    /**
+     * Generates the engine's schedules, showing the progress dialog over the
+     * given component if it takes long. This must be called from the event
+     * thread, and returns once generation is done or has been cancelled.
+     * @param parent the component to show the dialog over
+     * @return whether the schedules were generated, rather than the
+     *         generation being cancelled
+     */
+    boolean generate(Component parent) {
+        statusLabel.setText("Generating schedules...");
+        progressBar.setIndeterminate(true);
+        return run(parent, new Runnable() {
+            public void run() {
+                engine.generateSchedules();
+            }
+        });
+    }
+
+    /**
+     * Runs the given task on a new thread, showing the dialog if it takes
+     * long. A cancelled task is not waited for: a generation stops soon after
+     * it is cancelled, and a count, which can't be stopped, is left to finish
+     * on its own.
+     * @return whether the task finished, rather than being cancelled
+     */
+    private boolean run(Component parent, final Runnable task) {
+        final Throwable[] error = new Throwable[1];
+        final Thread thread = new Thread("Schedule generator") {
+            public void run() {
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    error[0] = t;
+                } finally {
+                    SwingUtilities.invokeLater(new Runnable() {
+                        public void run() {
+                            // this may arrive after a later task started
+                            if (worker != thread) return;
+                            finished = true;
+                            if (dialog != null) dialog.dispose();
+                        }
+                    });
+                }
+            }
+        };
+        worker = thread;
+        finished = false;
+        dialog = null;
+
+        boolean cancelled = false;
+        engine.addEngineListener(this);
+        try {
+            thread.start();
+            thread.join(SHOW_DELAY);
+            if (thread.isAlive()) {
+                dialog = createDialog(parent);
+                // this returns when the task finishes and the dialog is
+                // disposed, or when the user cancels or closes the dialog
+                dialog.setVisible(true);
+                if (!finished) {
+                    cancelled = true;
+                    engine.cancelGeneration();
+                }
+            }
+            if (!cancelled) thread.join();
+
+        } catch (InterruptedException e) {
+            cancelled = true;
+            engine.cancelGeneration();
+            Thread.currentThread().interrupt();
+
+        } finally {
+            engine.removeEngineListener(this);
+            if (dialog != null) dialog.dispose();
+            dialog = null;
+        }
+        if (cancelled) return false;
+
+        Throwable t = error[0];
+        if (t instanceof Error) throw (Error) t;
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t != null) throw new IllegalStateException(t);
+
+        return true;
+    }
+
+    private JDialog createDialog(Component parent) {
+        JOptionPane pane = new JOptionPane(
+                new Object[] { statusLabel, progressBar },
+                JOptionPane.INFORMATION_MESSAGE, JOptionPane.DEFAULT_OPTION,
+                null, new Object[] { "Cancel" });
+        return pane.createDialog(parent, "Generating Schedules");
+    }
+
+    public void schedulesGenerated(SchedulerEngine engine) {
+    }
+
+    public void generationProgressed(SchedulerEngine engine,
+            final GenerationProgress progress) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                double done = progress.getFractionDone();
+                if (done < 0) {
+                    progressBar.setIndeterminate(true);
+                } else {
+                    progressBar.setIndeterminate(false);
+                    progressBar.setValue((int) (done * PROGRESS_MAX));
+                }
+                int found = progress.getSchedulesFound();
+                statusLabel.setText("Generating schedules... "
+                        + format.format(found) + " found so far");
+            }
+        });
+    }
+
+    public void schedulesTruncated(SchedulerEngine engine,
+            final int generated) {
+        SwingUtilities.invokeLater(new Runnable() {
+            public void run() {
+                progressBar.setIndeterminate(false);
+                progressBar.setValue(PROGRESS_MAX);
+                statusLabel.setText("Stopped after " + format.format(generated)
+                        + " schedules, which is all that fit in memory");
+            }
+        });
+    }
+}
@@ -121,9 +121,26 @@ public class ViewSchedulesPanel
     public boolean preEnter() {
         SchedulerEngine scheduler = getEngine();
 
-        scheduler.generateSchedules();
+        GenerationProgressDialog progress
+                = new GenerationProgressDialog(scheduler);
+        if (scheduler.needsGenerating()) {
+            // counting takes little time or memory, so the user can be
+            // warned before generating more schedules than fit in memory
+            long count = progress.count(getSchedulerPanel());
+            if (count == -1) return false;
+            if (count == 0) {
+                showNoSchedulesMessage();
+                return false;
+            }
+            int max = scheduler.getMaxSchedules();
+            if (count > max && !confirmTooManySchedules(count, max)) {
+                return false;
+            }
+        }
+        if (!progress.generate(getSchedulerPanel())) return false;
 
-        if (scheduler.getGeneratedSchedules().size() == 0) {
+        if (scheduler.getGeneratedSchedules().isEmpty()
+                && !scheduler.isTruncated()) {
             showNoSchedulesMessage();
             return false;
         } else {
@@ -131,6 +148,21 @@ public class ViewSchedulesPanel
         }
     }
 
+    private boolean confirmTooManySchedules(long count, int max) {
+        String opt = getEngine().getExtraCourses().size() > 1
+                ? " or selecting fewer \"extra\" courses" : "";
+        Object[] options = { "Generate Anyway", "Cancel" };
+        int choice = JOptionPane.showOptionDialog(getSchedulerPanel(),
+                "There are " + numSchedulesFormat.format(count) + " possible "
+                + "schedules, but only " + numSchedulesFormat.format(max)
+                + " will fit into\nyour computer's memory.\n\nTry narrowing "
+                + "down your schedules" + opt + ", or generate\nonly the "
+                + "first " + numSchedulesFormat.format(max) + " schedules.",
+                "Too Many Schedules", JOptionPane.DEFAULT_OPTION,
+                JOptionPane.WARNING_MESSAGE, null, options, options[1]);
+        return choice == 0;
+    }
+
     private void showNoSchedulesMessage() {
         SchedulerEngine scheduler = getEngine();
         WeekMask<?> blocked = scheduler.getBlockedTime();
@@ -201,7 +233,11 @@ public class ViewSchedulesPanel
         String num = numSchedulesFormat.format(numSchedules);
 
         String s = (numSchedules == 1 ? "" : "s");
-        schedulesFoundText = num + " schedule" + s + " found";
+        if (engine.isTruncated()) {
+            schedulesFoundText = "Over " + num + " schedules found";
+        } else {
+            schedulesFoundText = num + " schedule" + s + " found";
+        }
         infoText.setText(schedulesFoundText);
         if (scheduleList.getSelectedIndex() ==
                 -1 && schedListModel.getSize() > 0) {
@@ -215,7 +251,12 @@ public class ViewSchedulesPanel
 
     public String getInfoBarText() {
         int numSchedules = schedules.size();
-        if (numSchedules > 30) {
+        if (getEngine().isTruncated()) {
+            return "There are too many possible schedules to show them all, "
+                    + "so only some of them are shown here. Try narrowing down "
+                    + "your schedules by blocking out times and sections on "
+                    + "the previous page.";
+        } else if (numSchedules > 30) {
             return "The Scheduler generated a lot of schedules for you. You "
                     + "may want to narrow down this list by blocking out times "
                     + "and sections on the previous page.";
@@ -153,7 +153,12 @@ public class TimeSelector extends TimeGrid {
         format.setMinimumIntegerDigits(2);
     }
 
+    /**
+     * The mask the user is editing, which is never handed out; {@link
+     * #getTimeMask} returns frozen snapshots of it.
+     */
     private WeekMask<?> timeMask = null;
+    private WeekMask<?> snapshot = null;
 
     private PropertyChangeSupport pcs = new PropertyChangeSupport(this);
 
@@ -171,6 +176,7 @@ public class TimeSelector extends TimeGrid {
             clearTimeMask();
         } else {
             timeMask = null;
+            snapshot = null;
         }
     }
 
@@ -295,8 +301,9 @@ public class TimeSelector extends TimeGrid {
             }
         }
         if (repaint) {
+            snapshot = null;
             repaint(getTimeRect(xbox, ybox).getBounds());
-            pcs.firePropertyChange(PROP_TIMEMASK, null, timeMask);
+            pcs.firePropertyChange(PROP_TIMEMASK, null, getTimeMask());
         }
     }
 
@@ -359,23 +366,31 @@ public class TimeSelector extends TimeGrid {
     }
 
     /**
-     * Sets the blocked time mask to be displayed and edited by the user.
+     * Sets the blocked time mask to be displayed and edited by the user. The
+     * user edits a copy, so the given mask may be frozen.
      * @param mask the blocked time mask to be edited
      */
     public void setTimeMask(WeekMask<?> mask) {
-        this.timeMask = mask;
+        this.timeMask = mask == null ? null : mask.mutableCopy();
+        this.snapshot = null;
 
-        pcs.firePropertyChange(PROP_TIMEMASK, null, mask);
+        pcs.firePropertyChange(PROP_TIMEMASK, null, getTimeMask());
 
         repaint();
     }
 
     /**
      * Returns the current time mask, which may or may not have been edited by
-     * the user.
+     * the user. The mask returned is a frozen snapshot, which later edits do
+     * not change.
      * @return the time mask being displayed and edited
      */
-    public WeekMask<?> getTimeMask() { return timeMask; }
+    public WeekMask<?> getTimeMask() {
+        WeekMask<?> timeMask = this.timeMask;
+        if (timeMask == null) return null;
+        if (snapshot == null) snapshot = timeMask.snapshot();
+        return snapshot;
+    }
 
     protected TimeGridType getTimeGridType() {
         return TimeGridType.TIME_SELECTOR;